@@ -6,12 +6,22 @@
  */
 package miniJava.AbstractSyntaxTrees;
 
+import miniJava.SyntacticAnalyzer.SourcePosition;
 import miniJava.SyntacticAnalyzer.Token;
+import miniJava.SyntacticAnalyzer.TokenType;
 
 public class BooleanLiteral extends Terminal {
 
+    public boolean value;
+
     public BooleanLiteral(Token t) {
         super(t);
+        value = t.getTokenType() == TokenType.TRUE;
+    }
+
+    public BooleanLiteral(boolean value, SourcePosition posn) {
+        super(value ? TokenType.TRUE : TokenType.FALSE, Boolean.toString(value), posn);
+        this.value = value;
     }
 
     public <A, R> R visit(Visitor<A, R> v, A o) {
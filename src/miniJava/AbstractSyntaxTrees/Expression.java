@@ -10,6 +10,8 @@ import miniJava.SyntacticAnalyzer.SourcePosition;
 
 public abstract class Expression extends AST {
 
+    public int regNeed = 0; // registers needed to evaluate, filled in by the code generator
+
     public Expression(SourcePosition posn) {
         super(posn);
     }
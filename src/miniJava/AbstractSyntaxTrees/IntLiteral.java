@@ -6,12 +6,34 @@
  */
 package miniJava.AbstractSyntaxTrees;
 
+import miniJava.SyntacticAnalyzer.SourcePosition;
 import miniJava.SyntacticAnalyzer.Token;
+import miniJava.SyntacticAnalyzer.TokenType;
 
 public class IntLiteral extends Terminal {
 
+    public int value; // parsed once here, later phases read this instead of the spelling
+    // Past Integer.MAX_VALUE, which the parser reports. The one exception is 2147483648 right after
+    //  a unary minus: value is then Integer.MIN_VALUE and ConstantFolding folds the negation to it.
+    public boolean tooLarge;
+
     public IntLiteral(Token t) {
         super(t);
+        long v = 0;
+        for (int i = 0; i < spelling.length(); i++)
+            v = Math.min(v * 10 + (spelling.charAt(i) - '0'), 1L << 32); // saturates, so it cannot wrap back into range
+        value = (int) v;
+        tooLarge = v > Integer.MAX_VALUE;
+    }
+
+    // the literal is exactly 2147483648
+    public boolean isMinValueMagnitude() {
+        return tooLarge && value == Integer.MIN_VALUE;
+    }
+
+    public IntLiteral(int value, SourcePosition posn) {
+        super(TokenType.NUM, Integer.toString(value), posn);
+        this.value = value;
     }
 
     public <A, R> R visit(Visitor<A, R> v, A o) {
@@ -6,12 +6,16 @@
  */
 package miniJava.AbstractSyntaxTrees;
 
+import miniJava.SyntacticAnalyzer.OperatorType;
 import miniJava.SyntacticAnalyzer.Token;
 
 public class Operator extends Terminal {
 
+    public OperatorType op;
+
     public Operator(Token t) {
         super(t);
+        op = t.getOperator();
     }
 
     public <A, R> R visit(Visitor<A, R> v, A o) {
@@ -6,6 +6,7 @@
  */
 package miniJava.AbstractSyntaxTrees;
 
+import miniJava.SyntacticAnalyzer.SourcePosition;
 import miniJava.SyntacticAnalyzer.Token;
 import miniJava.SyntacticAnalyzer.TokenType;
 
@@ -18,4 +19,11 @@ abstract public class Terminal extends AST {
         spelling = t.getTokenText();
         kind = t.getTokenType();
     }
+
+    // for terminals made up after parsing
+    protected Terminal(TokenType kind, String spelling, SourcePosition posn) {
+        super(posn);
+        this.spelling = spelling;
+        this.kind = kind;
+    }
 }
@@ -5,23 +5,64 @@ import miniJava.AbstractSyntaxTrees.*;
 import miniJava.AbstractSyntaxTrees.Package;
 import miniJava.CodeGeneration.x64.*;
 import miniJava.CodeGeneration.x64.ISA.*;
-
+import miniJava.ContextualAnalysis.Identification;
+import miniJava.SyntacticAnalyzer.OperatorType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class CodeGenerator implements Visitor<Object, Object> {
 	private ErrorReporter _errors;
 	private InstructionList _asm; // our list of instructions that are used to make the code section
 	private int staticVars = 0;
-	private Map<String, List<Instruction>> patch = new HashMap<>();
+	private Map<MethodDecl, Label> methodLabels = new HashMap<>();
+	private MethodDecl mainMethod;
 	private int mainAddr = -1;
-	private int printlnAddr;
+	private Label printlnLabel;
+	private Label flushLabel;
+	private Label refillLabel;
+	private Label faultLabel;
+
+	// Registers handed out to expression temporaries. rax and rdx are kept back as scratch for
+	//  division, comparisons and call results, r12-r15 are left for the runtime.
+	private static final Reg64[] TEMPS = { Reg64.RBX, Reg64.RCX, Reg64.RSI, Reg64.RDI,
+			Reg64.R8, Reg64.R9, Reg64.R10, Reg64.R11 };
+	private static final int ALL_TEMPS = (1 << TEMPS.length) - 1;
+	// need of anything containing a call or allocation, it saves whatever is live around it anyway
+	private static final int CALL_NEED = 64;
+	// The heap is a bump arena, r12 is the next free byte and r13 the end of what is mapped.
+	//  Running out maps another chunk of at least this many bytes.
+	private static final int HEAP_CHUNK = 1 << 20;
+	// println text collects in a buffer r14 points at, the first word is how many bytes are waiting.
+	//  It sits in .bss right after the static fields
+	private static final int OUT_BUFFER = 1 << 16;
+	// Arrays point at element 0 with their length in the word just below it
+	private static final int LENGTH_OFFSET = -8;
+	private int _freeTemps = ALL_TEMPS;
+	// the listing is only built when asked for, _source is the program text it quotes
+	private String _listingFile;
+	private List<String> _source;
+	private int _lastNoteLine = -1;
 	public CodeGenerator(ErrorReporter errors) {
 		this._errors = errors;
 	}
 	
+	// also write an annotated listing of the generated code to listingFile
+	public void setListing(String listingFile, String sourceFile) {
+		_listingFile = listingFile;
+		try {
+			_source = Files.readAllLines(Paths.get(sourceFile), StandardCharsets.ISO_8859_1);
+		} catch (IOException e) {
+			_source = new ArrayList<>(); // still a listing, just without the source text
+		}
+	}
+	
 	public void parse(Package prog) {
 		_asm = new InstructionList();
-		_asm.markOutputStart();
 		// If you haven't refactored the name "ModRMSIB" to something like "R",
 		//  go ahead and do that now. You'll be needing that object a lot.
 		// Here is some example code.
@@ -52,31 +93,36 @@ public class CodeGenerator implements Visitor<Object, Object> {
 		// _asm.add( new Push(new ModRMSIB(Reg64.RBP,16)) );
 		//   This one doesn't specify RegR because it is: push [rbp+16] and there is no second operand register needed
 		
-		// Patching example:
-		// Instruction someJump = new Jmp((int)0); // 32-bit offset jump to nowhere
-		// _asm.add( someJump ); // populate listIdx and startAddress for the instruction
-		// ...
-		// ... visit some code that probably uses _asm.add
-		// ...
-		// patch method 1: calculate the offset yourself
-		//     _asm.patch( someJump.listIdx, new Jmp(asm.size() - someJump.startAddress - 5) );
-		// -=-=-=-
-		// patch method 2: let the jmp calculate the offset
-		//  Note the false means that it is a 32-bit immediate for jumping (an int)
-		//     _asm.patch( someJump.listIdx, new Jmp(asm.size(), someJump.startAddress, false) );
+		// Forward jumps: add a Jmp/CondJmp/Call to a Label and bind the Label later,
+		//  InstructionList.layout encodes every Branch once the addresses are known.
 		
 		prog.visit(this,null);
-		if (mainAddr == -1) _errors.reportError("No main method");
-		_asm.outputFromMark();
+		if (mainMethod == null) {
+			_errors.reportError("No main method");
+		} else {
+			Peephole.optimize(_asm, labelOf(mainMethod));
+			_asm.layout();
+			methodLabels.forEach((md, l) -> md.instructionAddr = _asm.addressOf(l));
+			mainAddr = mainMethod.instructionAddr;
+		}
 		// Output the file "a.out" if no errors
-		if( !_errors.hasErrors() )
+		if( !_errors.hasErrors() ) {
 			makeElf("a.out");
+			if (_listingFile != null) makeListing(_listingFile);
+		}
 	}
 
 	@Override
 	public Object visitPackage(Package prog, Object arg) {
 		// TODO: visit relevant parts of our AST
-		printlnAddr = makePrintln();
+		note("runtime: flush");
+		flushLabel = makeFlush();
+		note("runtime: fault");
+		faultLabel = makeFault();
+		note("runtime: println");
+		printlnLabel = makePrintln();
+		note("runtime: refill");
+		refillLabel = makeRefill();
 		prog.classDeclList.forEach(cd -> cd.fieldDeclList.forEach(fd -> fd.visit(this, cd)));
 		prog.classDeclList.forEach(cd -> cd.visit(this, null));
 		return null;
@@ -102,9 +148,12 @@ public class CodeGenerator implements Visitor<Object, Object> {
 
 	@Override
 	public Object visitMethodDecl(MethodDecl md, Object arg) {
-		md.instructionAddr = _asm.getSize();
+		note(((ClassDecl) arg).name + "." + md.name);
+		_asm.bind(labelOf(md));
 		_asm.add(new Push(Reg64.RBP));
 		_asm.add(new Mov_rmr(new R(Reg64.RBP, Reg64.RSP)));
+		md.locals = layoutLocals(md.statementList, 0);
+		if (md.locals > 0) _asm.add(new Sub(new R(Reg64.RSP, true), md.locals * 8));
 		boolean isMain = md.name.equals("main") &&
 				md.isStatic &&
 				!md.isPrivate &&
@@ -115,27 +164,32 @@ public class CodeGenerator implements Visitor<Object, Object> {
 				((ArrayType)md.parameterDeclList.get(0).type).eltType.typeKind == TypeKind.UNSUPPORTED /*&&
 				((ClassType)((ArrayType)md.parameterDeclList.get(0).type).eltType).className.spelling.equals("String")*/;
 		if (isMain) {
-			if (mainAddr == -1)
-				mainAddr = md.instructionAddr;
+			if (mainMethod == null)
+				mainMethod = md;
 			else _errors.reportError("more than one main method");
+			// an empty arena, the first allocation maps the first chunk
+			_asm.add(new Xor(new R(Reg64.R12, Reg64.R12)));
+			_asm.add(new Xor(new R(Reg64.R13, Reg64.R13)));
+			_asm.add(new Lea(new R(staticVars * 8, Reg64.R14)));
 		}
 		md.parameterDeclList.forEach(pd -> pd.visit(this, md));
 		md.statementList.forEach(s -> s.visit(this, md));
 		if (md.type.typeKind != TypeKind.VOID && !(md.statementList.get(md.statementList.size()-1) instanceof ReturnStmt)) _errors.reportError("No return statement for non void method.");
-		if (patch.containsKey(md.name)) {
-			patch.get(md.name).forEach(instruction -> _asm.patch(instruction.listIdx, new Call(instruction.startAddress, md.instructionAddr)));
-			patch.remove(md.name);
-		}
+		makeEpilogue(isMain);
+		return null;
+	}
+
+	private void makeEpilogue(boolean isMain) {
 		_asm.add(new Mov_rmr(new R(Reg64.RSP, Reg64.RBP)));
 		_asm.add(new Pop(Reg64.RBP));
 		if (!isMain)
 			_asm.add(new Ret());
 		else {
+			_asm.add(new Call(flushLabel));
 			_asm.add(new Mov_rmi(new R(Reg64.RAX, true), 60));
 			_asm.add(new Xor(new R(Reg64.RDI, Reg64.RDI)));
 			_asm.add(new Syscall());
 		}
-		return null;
 	}
 
 	@Override
@@ -147,10 +201,35 @@ public class CodeGenerator implements Visitor<Object, Object> {
 
 	@Override
 	public Object visitVarDecl(VarDecl decl, Object arg) {
-		((MethodDecl)arg).locals++;
-		decl.offset = ((MethodDecl)arg).locals * -8;
-		_asm.add(new Push(1));
-		return null;
+		return null; // the slot was handed out by layoutLocals
+	}
+
+	// Frame layout, run before a method's code: each local gets a slot below rbp after the `used`
+	//  ones already taken. A block's locals die with it, so the blocks that follow reuse its
+	//  slots. Returns the most slots live at once, which is what the prologue reserves.
+	private int layoutLocals(StatementList sl, int used) {
+		int most = used;
+		for (Statement s : sl) {
+			int after = layoutLocals(s, used);
+			most = Math.max(most, after);
+			if (s instanceof VarDeclStmt) used = after;
+		}
+		return most;
+	}
+
+	private int layoutLocals(Statement s, int used) {
+		if (s instanceof VarDeclStmt) {
+			((VarDeclStmt) s).varDecl.offset = -8 * (used + 1);
+			return used + 1;
+		}
+		if (s instanceof BlockStmt) return layoutLocals(((BlockStmt) s).sl, used);
+		if (s instanceof WhileStmt) return layoutLocals(((WhileStmt) s).body, used);
+		if (s instanceof IfStmt) {
+			IfStmt stmt = (IfStmt) s;
+			int most = layoutLocals(stmt.thenStmt, used);
+			return stmt.elseStmt == null ? most : Math.max(most, layoutLocals(stmt.elseStmt, used));
+		}
+		return used;
 	}
 
 	@Override
@@ -170,321 +249,320 @@ public class CodeGenerator implements Visitor<Object, Object> {
 
 	@Override
 	public Object visitBlockStmt(BlockStmt stmt, Object arg) {
-		_asm.add(new Mov_rmr(new R(Reg64.R15, Reg64.RBP)));
 		stmt.sl.forEach(s -> s.visit(this, arg));
-		_asm.add(new Mov_rmr(new R(Reg64.RBP, Reg64.R15)));
-
 		return null;
 	}
 
 	@Override
 	public Object visitVardeclStmt(VarDeclStmt stmt, Object arg) {
+		note(stmt);
 		stmt.varDecl.visit(this, arg);
-		stmt.initExp.visit(this, Boolean.TRUE);
-		_asm.add(new Pop(Reg64.RAX));
-		//System.out.println(stmt.varDecl.offset);
-		_asm.add(new Mov_rmr(new R(Reg64.RBP, stmt.varDecl.offset, Reg64.RAX)));
+		Reg64 val = evaluate(stmt.initExp);
+		_asm.add(new Mov_rmr(new R(Reg64.RBP, stmt.varDecl.offset, val)));
+		free(val);
 		return null;
 	}
 
 	@Override
 	public Object visitAssignStmt(AssignStmt stmt, Object arg) {
-		stmt.ref.visit(this, Boolean.TRUE);
-		stmt.val.visit(this, null);
-		_asm.add(new Pop(Reg64.RCX));
-		_asm.add(new Pop(Reg64.RAX));
-
-		_asm.add(new Mov_rmr(new R(Reg64.RAX, 0, Reg64.RCX)));
+		note(stmt);
+		if (isStatic(stmt.ref.decl)) {
+			Reg64 val = evaluate(stmt.val);
+			_asm.add(new Mov_rmr(new R(((FieldDecl) stmt.ref.decl).offset, val)));
+			free(val);
+		} else if (stmt.ref.decl instanceof LocalDecl) {
+			Reg64 val = evaluate(stmt.val);
+			_asm.add(new Mov_rmr(new R(Reg64.RBP, ((LocalDecl) stmt.ref.decl).offset, val)));
+			free(val);
+		} else if (stmt.ref instanceof QualRef) {
+			Reg64[] r = evaluatePair(((QualRef) stmt.ref).ref, stmt.val);
+			checkNull(((QualRef) stmt.ref).ref, r[0]);
+			_asm.add(new Mov_rmr(new R(r[0], ((FieldDecl) stmt.ref.decl).offset, r[1])));
+			free(r[0]);
+			free(r[1]);
+		} else {
+			// a field of this, rax is never handed out so it can hold the object
+			Reg64 val = evaluate(stmt.val);
+			_asm.add(new Mov_rrm(new R(Reg64.RBP, 16, Reg64.RAX)));
+			_asm.add(new Mov_rmr(new R(Reg64.RAX, ((FieldDecl) stmt.ref.decl).offset, val)));
+			free(val);
+		}
 		return null;
 	}
 
 	@Override
 	public Object visitIxAssignStmt(IxAssignStmt stmt, Object arg) {
-		stmt.ref.visit(this, null);
-		stmt.exp.visit(this, null);
-		stmt.ix.visit(this, null);
-		_asm.add(new Pop(Reg64.RCX));
-		_asm.add(new Pop(Reg64.RBX));
-		_asm.add(new Pop(Reg64.RAX));
-
-
-		_asm.add(new Mov_rmr(new R(Reg64.RAX, Reg64.RCX, 8, 0, Reg64.RBX)));
+		note(stmt);
+		// left to right like Java: array and index stay in temps while the value is computed,
+		//  evaluate spills them if it runs short. The bounds check comes after, as in Java
+		Reg64[] r = evaluatePair(stmt.ref, stmt.ix);
+		Reg64 val = evaluate(stmt.exp);
+		checkIndex(r[0], r[1]);
+		_asm.add(new Mov_rmr(new R(r[0], r[1], 8, 0, val)));
+		free(r[0]);
+		free(r[1]);
+		free(val);
 		return null;
 	}
 
 	@Override
 	public Object visitCallStmt(CallStmt stmt, Object arg) {
-		for (int i = stmt.argList.size() - 1; i >= 0; i--) {
-			//System.out.println(i+1000);
-			stmt.argList.get(i).visit(this, Boolean.TRUE);
-		}
-		if (stmt.methodRef instanceof QualRef) {
-			if (!((MethodDecl)stmt.methodRef.decl).isStatic) {
-				((QualRef) stmt.methodRef).ref.visit(this, Boolean.TRUE);
-				}
-			if (((QualRef)stmt.methodRef).id.spelling.equals("println")) {
-				//System.out.println("asdasdasdasda");
-				if (stmt.argList.get(0) instanceof BinaryExpr) {
-					((MethodDecl) arg).locals++;
-					_asm.add(new Mov_rmr(new R(Reg64.RBP, -8 * ((MethodDecl) arg).locals, Reg64.RAX)));
-					_asm.add(new Lea(new R(Reg64.RBP, -8 * ((MethodDecl) arg).locals, Reg64.R15)));
-				} else {
-					_asm.add(new Pop(Reg64.R15));
-				}
-				_asm.add(new Call(_asm.getSize(), printlnAddr));
-			}
-			else if (((MethodDecl)((QualRef) stmt.methodRef).id.decl).instructionAddr == -1) {
-				Call jmp = new Call(0);
-				_asm.add(jmp);
-				Object s = patch.containsKey(((QualRef) stmt.methodRef).id.spelling) ?
-						patch.get(((QualRef) stmt.methodRef).id.spelling).add(jmp) :
-						patch.put(((QualRef) stmt.methodRef).id.spelling, new ArrayList<>(Collections.singletonList(jmp)));
-
-			}else {
-				_asm.add(new Call(_asm.getSize(), ((MethodDecl)((QualRef) stmt.methodRef).id.decl).instructionAddr));
-			}
-		} else {
-			if (!((MethodDecl)stmt.methodRef.decl).isStatic)
-				(stmt.methodRef).visit(this, Boolean.TRUE);
-			if (((MethodDecl)(stmt.methodRef).decl).instructionAddr == -1) {
-				Call jmp = new Call(0);
-				_asm.add(jmp);
-				Object s = patch.containsKey((stmt.methodRef).decl.name) ?
-						patch.get((stmt.methodRef).decl.name).add(jmp) :
-						patch.put((stmt.methodRef).decl.name, new ArrayList<>(Collections.singletonList(jmp)));
-
-			}else {
-				_asm.add(new Call(_asm.getSize(), ((MethodDecl)(stmt.methodRef).decl).instructionAddr));
-			}
-		}
+		note(stmt);
+		makeCall(stmt.methodRef, stmt.argList);
 		return null;
 	}
 
 	@Override
 	public Object visitReturnStmt(ReturnStmt stmt, Object arg) {
-		stmt.returnExpr.visit(this, null);
+		note(stmt);
+		if (stmt.returnExpr != null) {
+			Reg64 val = evaluate(stmt.returnExpr);
+			_asm.add(new Mov_rmr(new R(Reg64.RAX, val)));
+			free(val);
+		}
+		makeEpilogue(arg == mainMethod);
 		return null;
 	}
 
 	@Override
 	public Object visitIfStmt(IfStmt stmt, Object arg) {
-		stmt.cond.visit(this, null);
-		_asm.add(new Pop(Reg64.RAX));
-		_asm.add(new Cmp(new R(Reg64.RAX, true), 0));
-		int currAddr = _asm.getSize();
-		int toPatch = _asm.add(new CondJmp(Condition.E, 0));
+		note(stmt);
+		Label elseLabel = new Label();
+		branch(stmt.cond, false, elseLabel);
 		stmt.thenStmt.visit(this, arg);
-		int currAddrJmp = _asm.getSize();
 		if (stmt.elseStmt != null) {
-			int toPatchJump = _asm.add(new Jmp(0));
-			int elseJmpAddr = _asm.getSize();
+			Label end = new Label();
+			_asm.add(new Jmp(end));
+			_asm.bind(elseLabel);
 			stmt.elseStmt.visit(this, arg);
-			_asm.patch(toPatchJump, new Jmp(currAddrJmp, _asm.getSize(), false));
-			currAddrJmp = elseJmpAddr;
+			_asm.bind(end);
+		} else {
+			_asm.bind(elseLabel);
 		}
-		_asm.patch(toPatch, new CondJmp(Condition.E, currAddr, currAddrJmp, false));
 
 		return null;
 	}
 
 	@Override
 	public Object visitWhileStmt(WhileStmt stmt, Object arg) {
-		int currAddr = _asm.getSize();
-		stmt.cond.visit(this, null);
-		_asm.add(new Pop(Reg64.RAX));
-		int patchAddr = _asm.getSize();
-		int toPatch = _asm.add(new CondJmp(Condition.E, 0));
-		stmt.body.visit(this, null);
-		_asm.add(new Jmp(_asm.getSize(), currAddr, false));
-		_asm.patch(toPatch, new CondJmp(Condition.E, patchAddr, _asm.getSize(), false));
-		return null;
+		note(stmt);
+		// the test sits below the body, so each trip around the loop takes one branch
+		Label body = new Label(), test = new Label();
+		_asm.add(new Jmp(test));
+		_asm.bind(body);
+		stmt.body.visit(this, arg);
+		_asm.bind(test);
+		branch(stmt.cond, true, body);
+		return null;
+	}
+
+	// Jumps to target when cond comes out as `when` and falls through otherwise. Comparisons
+	//  go straight to cmp and jcc, && and || become chains of these that stop at the first
+	//  operand deciding the result, like Java does.
+	private void branch(Expression cond, boolean when, Label target) {
+		if (cond instanceof LiteralExpr && ((LiteralExpr) cond).lit instanceof BooleanLiteral) {
+			if (((BooleanLiteral) ((LiteralExpr) cond).lit).value == when) _asm.add(new Jmp(target));
+			return;
+		}
+		if (cond instanceof UnaryExpr && ((UnaryExpr) cond).operator.op == OperatorType.NOT) {
+			branch(((UnaryExpr) cond).expr, !when, target);
+			return;
+		}
+		if (cond instanceof BinaryExpr) {
+			BinaryExpr expr = (BinaryExpr) cond;
+			Operator op = expr.operator;
+			if (op.op == OperatorType.ANDAND || op.op == OperatorType.OROR) {
+				// the left operand alone decides when it is false for && and true for ||
+				boolean decides = op.op == OperatorType.OROR;
+				if (decides == when) {
+					branch(expr.left, when, target);
+					branch(expr.right, when, target);
+				} else {
+					Label skip = new Label();
+					branch(expr.left, decides, skip);
+					branch(expr.right, when, target);
+					_asm.bind(skip);
+				}
+				return;
+			}
+			if (Condition.getCond(op) != null) {
+				Reg64[] r = evaluatePair(expr.left, expr.right);
+				_asm.add(new Cmp(new R(r[0], r[1])));
+				free(r[0]);
+				free(r[1]);
+				_asm.add(new CondJmp(when ? Condition.getCond(op) : Condition.getOppositeCond(op), target));
+				return;
+			}
+		}
+		Reg64 val = evaluate(cond);
+		_asm.add(new Cmp(new R(val, true), 0));
+		free(val);
+		_asm.add(new CondJmp(when ? Condition.NE : Condition.E, target));
 	}
 
+	// Expressions and references visit to the register holding their value, which the caller frees.
+
 	@Override
 	public Object visitUnaryExpr(UnaryExpr expr, Object arg) {
-		Operator op = expr.operator;
-		expr.expr.visit(this, null);
-		_asm.add(new Pop(Reg64.RAX));
-		switch (op.spelling) {
-			case "!":
-				_asm.add(new Not(new R(Reg64.RAX, true)));
+		Reg64 val = evaluate(expr.expr);
+		switch (expr.operator.op) {
+			case NOT:
+				_asm.add(new Xor(new R(val, true), 1));
 				break;
-			case "-":
-				_asm.add(new Neg(new R(Reg64.RAX, true)));
+			case MINUS:
+				_asm.add(new Neg(new R(val, true)));
 				break;
 		}
-		_asm.add(new Push(Reg64.RAX));
-		return null;
+		return val;
 	}
 
 	@Override
 	public Object visitBinaryExpr(BinaryExpr expr, Object arg) {
-		Operator op = expr.operator;
-		expr.left.visit(this, null);
-		expr.right.visit(this, null);
-		_asm.add(new Pop(Reg64.RCX)); //puts right in rcx
-		_asm.add(new Pop(Reg64.RAX)); //puts left in rax
-
-        switch (op.spelling) {
-            case "+":
-                _asm.add(new Add(new R(Reg64.RAX, Reg64.RCX)));
-                _asm.add(new Push(Reg64.RAX));
-                break;
-            case "-":
-                _asm.add(new Sub(new R(Reg64.RAX, Reg64.RCX)));
-                _asm.add(new Push(Reg64.RAX));
-                break;
-            case "*":
-                _asm.add(new Imul(Reg64.RAX, new R(Reg64.RCX, true)));
-                _asm.add(new Push(Reg64.RAX));
-                break;
-            case "/":
-                _asm.add(new Idiv(new R(Reg64.RAX, Reg64.RCX)));
-                _asm.add(new Push(Reg64.RAX));
-                break;
-            case "||":
-                _asm.add(new Or(new R(Reg64.RAX, Reg64.RCX)));
-                _asm.add(new Push(Reg64.RAX));
-                break;
-            case "&&":
-                _asm.add(new And(new R(Reg64.RAX, Reg64.RCX)));
-                _asm.add(new Push(Reg64.RAX));
-                break;
-            default:
-                _asm.add(new Xor(new R(Reg64.RDX, Reg64.RDX)));
-
-                _asm.add(new Cmp(new R(Reg64.RAX, Reg64.RCX)));
-                _asm.add(new SetCond(Condition.getCond(op), Reg8.DL));
-
-                _asm.add(new Push(Reg64.RDX));
-                break;
-        }
-		return null;
+		if (expr.operator.op == OperatorType.SHL) {
+			// folding only ever leaves a literal shift count on the right
+			Reg64 val = evaluate(expr.left);
+			_asm.add(new Shl(new R(val, true), ((IntLiteral) ((LiteralExpr) expr.right).lit).value));
+			return val;
+		}
+		if (expr.operator.op == OperatorType.ANDAND || expr.operator.op == OperatorType.OROR) {
+			// the right operand must not run when the left one already decides
+			Label isFalse = new Label(), done = new Label();
+			branch(expr, false, isFalse);
+			Reg64 val = allocate();
+			_asm.add(new Mov_rmi(new R(val, true), 1));
+			_asm.add(new Jmp(done));
+			_asm.bind(isFalse);
+			_asm.add(new Mov_rmi(new R(val, true), 0));
+			_asm.bind(done);
+			return val;
+		}
+		Reg64[] r = evaluatePair(expr.left, expr.right);
+		Reg64 left = r[0], right = r[1];
+
+		switch (expr.operator.op) {
+			case PLUS:
+				_asm.add(new Add(new R(left, right)));
+				break;
+			case MINUS:
+				_asm.add(new Sub(new R(left, right)));
+				break;
+			case TIMES:
+				_asm.add(new Imul(left, new R(right, true)));
+				break;
+			case DIVIDE:
+				// rdx:rax / right, neither rax nor rdx is ever handed out
+				if (!(expr.right instanceof LiteralExpr) || ((IntLiteral) ((LiteralExpr) expr.right).lit).value == 0) {
+					// idiv would trap on zero before anything buffered got written
+					_asm.add(new Cmp(new R(right, true), 0));
+					_asm.add(new CondJmp(Condition.E, faultLabel));
+				}
+				_asm.add(new Mov_rmr(new R(Reg64.RAX, left)));
+				_asm.add(new Cqo());
+				_asm.add(new Idiv(new R(right, true)));
+				_asm.add(new Mov_rmr(new R(left, Reg64.RAX)));
+				break;
+			default:
+				_asm.add(new Xor(new R(Reg64.RAX, Reg64.RAX)));
+				_asm.add(new Cmp(new R(left, right)));
+				_asm.add(new SetCond(Condition.getCond(expr.operator), Reg8.AL));
+				_asm.add(new Mov_rmr(new R(left, Reg64.RAX)));
+				break;
+		}
+		free(right);
+		return left;
 	}
 
 	@Override
 	public Object visitRefExpr(RefExpr expr, Object arg) {
-		expr.ref.visit(this, arg);
-		return null;
+		return expr.ref.visit(this, arg);
 	}
 
 	@Override
 	public Object visitIxExpr(IxExpr expr, Object arg) {
-		expr.ref.visit(this, null);
-		expr.ixExpr.visit(this, null);
-		_asm.add(new Pop(Reg64.RCX));
-		_asm.add(new Pop(Reg64.RAX));
-		_asm.add(new Mov_rrm(new R(Reg64.RAX, Reg64.RCX, 8, 0, Reg64.RAX)));
-		_asm.add(new Push(Reg64.RAX));
-		return null;
+		Reg64[] r = evaluatePair(expr.ref, expr.ixExpr);
+		checkIndex(r[0], r[1]);
+		_asm.add(new Mov_rrm(new R(r[0], r[1], 8, 0, r[0])));
+		free(r[1]);
+		return r[0];
 	}
 
 	@Override
 	public Object visitCallExpr(CallExpr expr, Object arg) {
-		for (int i = expr.argList.size() - 1; i > 0; i--) expr.argList.get(i).visit(this, null);
-		if (expr.functionRef instanceof QualRef) {
-			if (!((MethodDecl)expr.functionRef.decl).isStatic)
-				((QualRef) expr.functionRef).ref.visit(this, Boolean.TRUE);
-			if (((QualRef)expr.functionRef).id.spelling.equals("println"))
-				_asm.add(new Call(_asm.getSize(), printlnAddr));
-			else if (((MethodDecl)((QualRef) expr.functionRef).id.decl).instructionAddr == -1) {
-				Call jmp = new Call(0);
-				_asm.add(jmp);
-				Object s = patch.containsKey(((QualRef) expr.functionRef).id.spelling) ?
-						patch.get(((QualRef) expr.functionRef).id.spelling).add(jmp) :
-						patch.put(((QualRef) expr.functionRef).id.spelling, new ArrayList<>(Collections.singletonList(jmp)));
-
-			}else {
-				_asm.add(new Call(_asm.getSize(), ((MethodDecl)((QualRef) expr.functionRef).id.decl).instructionAddr));
-			}
-		} else {
-			if (!((MethodDecl)expr.functionRef.decl).isStatic)
-				(expr.functionRef).visit(this, Boolean.TRUE);
-			if (((MethodDecl)(expr.functionRef).decl).instructionAddr == -1) {
-				Call jmp = new Call(0);
-				_asm.add(jmp);
-				Object s = patch.containsKey((expr.functionRef).decl.name) ?
-						patch.get((expr.functionRef).decl.name).add(jmp) :
-						patch.put((expr.functionRef).decl.name, new ArrayList<>(Collections.singletonList(jmp)));
-
-			}else {
-				_asm.add(new Call(_asm.getSize(), ((MethodDecl)(expr.functionRef).decl).instructionAddr));
-			}
-		}
-		return null;
+		makeCall(expr.functionRef, expr.argList);
+		Reg64 result = allocate();
+		_asm.add(new Mov_rmr(new R(result, Reg64.RAX)));
+		return result;
 	}
 
 	@Override
 	public Object visitLiteralExpr(LiteralExpr expr, Object arg) {
-		expr.lit.visit(this, null);
-		return null;
+		return expr.lit.visit(this, null);
 	}
 
 	@Override
 	public Object visitNewObjectExpr(NewObjectExpr expr, Object arg) {
-		makeMalloc();
-		_asm.add(new Push(Reg64.RAX));
-		return null;
+		// a class without fields still gets 8 bytes so every object has its own address
+		int size = Math.max(((ClassDecl) expr.classtype.className.decl)._size, 1) * 8;
+		makeAlloc(new Add(new R(Reg64.R12, true), size));
+		Reg64 obj = allocate();
+		_asm.add(new Mov_rmr(new R(obj, Reg64.RAX)));
+		return obj;
 	}
 
 	@Override
 	public Object visitNewArrayExpr(NewArrayExpr expr, Object arg) {
-		_asm.add(new Push(0));
-		makeMalloc();
-		return null;
+		Reg64 len = evaluate(expr.sizeExpr);
+		_asm.add(new Cmp(new R(len, true), 0));
+		_asm.add(new CondJmp(Condition.LT, faultLabel));
+		makeAlloc(new Lea(new R(Reg64.RAX, len, 8, -LENGTH_OFFSET, Reg64.R12)));
+		_asm.add(new Mov_rmr(new R(Reg64.RAX, 0, len)));
+		free(len);
+		Reg64 arr = allocate();
+		_asm.add(new Lea(new R(Reg64.RAX, -LENGTH_OFFSET, arr)));
+		return arr;
 	}
 
 	@Override
 	public Object visitThisRef(ThisRef ref, Object arg) {
-		_asm.add(new Push(new R(Reg64.RBP, 16)));
-		return null;
+		Reg64 obj = allocate();
+		_asm.add(new Mov_rrm(new R(Reg64.RBP, 16, obj)));
+		return obj;
 	}
 
 	@Override
 	public Object visitIdRef(IdRef ref, Object arg) {
-		//System.out.print(ref.decl.getClass() + " and ");
-		//System.out.println(arg);
+		Reg64 val = allocate();
 		if(ref.decl instanceof LocalDecl) {
-			//System.out.println(1);
-			LocalDecl ld = (LocalDecl) ref.decl;
-			if(arg instanceof Boolean) {
-				//System.out.println(2);
-				_asm.add(new Lea(new R(Reg64.RBP, ld.offset, Reg64.RAX)));
-				_asm.add(new Push(Reg64.RAX));
-			} else {
-				_asm.add(new Push(new R(Reg64.RBP, ld.offset)));
-			}
-		} else if(ref.id.decl instanceof FieldDecl) {
-			FieldDecl fD = (FieldDecl) ref.id.decl;
-			_asm.add(new Mov_rmr(new R(Reg64.RBP, 16, Reg64.RAX)));
-			if(arg instanceof Boolean) {
-				_asm.add(new Lea(new R(Reg64.RAX, fD.offset, Reg64.RAX)));
-				_asm.add(new Push(Reg64.RAX));
-			} else {
-				_asm.add(new Push(new R(Reg64.RAX, fD.offset)));
-			}
+			_asm.add(new Mov_rrm(new R(Reg64.RBP, ((LocalDecl) ref.decl).offset, val)));
+		} else if(isStatic(ref.decl)) {
+			_asm.add(new Mov_rrm(new R(((FieldDecl) ref.decl).offset, val)));
+		} else if(ref.decl instanceof FieldDecl) {
+			_asm.add(new Mov_rrm(new R(Reg64.RBP, 16, val)));
+			_asm.add(new Mov_rrm(new R(val, ((FieldDecl) ref.decl).offset, val)));
 		}
-		return null;
+		return val;
 	}
 
 	@Override
 	public Object visitQRef(QualRef ref, Object arg) {
-		ref.ref.visit(this, arg);
-		_asm.add(new Pop(Reg64.RAX));
-		System.out.println(ref.id.spelling + " " + ((FieldDecl)ref.id.decl).offset);
-		if (ref.ref instanceof QualRef) {
-			_asm.add(new Mov_rrm(new R(Reg64.RAX, 0, Reg64.RAX)));
-		} else {
-			_asm.add(new Add(new R(Reg64.RAX, true), ((FieldDecl) ref.id.decl).offset));
+		if (isStatic(ref.id.decl)) {
+			// whatever is in front of the dot only named the class, a reference has no side effects
+			Reg64 val = allocate();
+			_asm.add(new Mov_rrm(new R(((FieldDecl) ref.id.decl).offset, val)));
+			return val;
 		}
-		_asm.add(new Push(Reg64.RAX));
-		return null;
+		Reg64 obj = evaluate(ref.ref);
+		checkNull(ref.ref, obj);
+		int offset = ref.id.decl == Identification.ARRAY_LENGTH ? LENGTH_OFFSET : ((FieldDecl) ref.id.decl).offset;
+		_asm.add(new Mov_rrm(new R(obj, offset, obj)));
+		return obj;
 	}
 
 	@Override
 	public Object visitNullRef(NullRef ref, Object arg) {
-		_asm.add(new Push(0));
-		return null;
+		Reg64 val = allocate();
+		_asm.add(new Mov_rmi(new R(val, true), 0));
+		return val;
 	}
 
 	@Override
@@ -499,49 +577,324 @@ public class CodeGenerator implements Visitor<Object, Object> {
 
 	@Override
 	public Object visitIntLiteral(IntLiteral num, Object arg) {
-		_asm.add(new Push(Integer.parseInt(num.spelling)));
-		return null;
+		Reg64 val = allocate();
+		_asm.add(new Mov_rmi(new R(val, true), num.value));
+		return val;
 	}
 
 	@Override
 	public Object visitBooleanLiteral(BooleanLiteral bool, Object arg) {
-		_asm.add(new Push(bool.spelling.equals("true") ? 1 : 0));
-		return null;
+		Reg64 val = allocate();
+		_asm.add(new Mov_rmi(new R(val, true), bool.value ? 1 : 0));
+		return val;
+	}
+
+	// Arguments are pushed left to right, then the object for instance methods, so the
+	//  callee finds them where visitParameterDecl put them. The result comes back in rax.
+	private void makeCall(Reference methodRef, ExprList args) {
+		int live = saveLive();
+		for (Expression e : args) {
+			Reg64 val = evaluate(e);
+			_asm.add(new Push(val));
+			free(val);
+		}
+		MethodDecl md = (MethodDecl) methodRef.decl;
+		int pushed = args.size();
+		if (methodRef instanceof QualRef && ((QualRef) methodRef).id.spelling.equals("println")) {
+			_asm.add(new Call(printlnLabel));
+		} else {
+			if (!md.isStatic) {
+				Reg64 obj;
+				if (methodRef instanceof QualRef) {
+					obj = evaluate(((QualRef) methodRef).ref);
+					checkNull(((QualRef) methodRef).ref, obj);
+				} else {
+					obj = allocate();
+					_asm.add(new Mov_rrm(new R(Reg64.RBP, 16, obj)));
+				}
+				_asm.add(new Push(obj));
+				free(obj);
+				pushed++;
+			}
+			_asm.add(new Call(labelOf(md)));
+		}
+		if (pushed > 0) _asm.add(new Add(new R(Reg64.RSP, true), pushed * 8));
+		restoreLive(live);
+	}
+
+	// methods get their label on first mention, calls may come before the method itself
+	private Label labelOf(MethodDecl md) {
+		return methodLabels.computeIfAbsent(md, k -> new Label());
+	}
+
+	private Reg64 allocate() {
+		if (_freeTemps == 0) throw new IllegalStateException("out of registers");
+		int i = Integer.numberOfTrailingZeros(_freeTemps);
+		_freeTemps &= ~(1 << i);
+		return TEMPS[i];
+	}
+
+	private void free(Reg64 r) {
+		for (int i = 0; i < TEMPS.length; i++)
+			if (TEMPS[i] == r) _freeTemps |= 1 << i;
+	}
+
+	// pushes every register in use and hands them all out again, returns what to give back to restoreLive
+	private int saveLive() {
+		int live = ~_freeTemps & ALL_TEMPS;
+		for (int i = 0; i < TEMPS.length; i++)
+			if ((live & (1 << i)) != 0) _asm.add(new Push(TEMPS[i]));
+		_freeTemps = ALL_TEMPS;
+		return live;
+	}
+
+	private void restoreLive(int live) {
+		for (int i = TEMPS.length - 1; i >= 0; i--)
+			if ((live & (1 << i)) != 0) _asm.add(new Pop(TEMPS[i]));
+		_freeTemps = ~live & ALL_TEMPS;
+	}
+
+	private Reg64 evaluate(AST node) {
+		if (need(node) < 2 || Integer.bitCount(_freeTemps) >= 2)
+			return (Reg64) node.visit(this, null);
+		// too few registers left to evaluate both operands, start over with all of them
+		int live = saveLive();
+		Reg64 val = (Reg64) node.visit(this, null);
+		_asm.add(new Mov_rmr(new R(Reg64.RAX, val)));
+		restoreLive(live);
+		val = allocate();
+		_asm.add(new Mov_rmr(new R(val, Reg64.RAX)));
+		return val;
+	}
+
+	// Sethi-Ullman: the operand needing more registers goes first, unless either contains a call,
+	//  which keeps Java's left to right order. If the second operand still needs every free
+	//  register, the first one waits on the stack. Returns { a, b }.
+	private Reg64[] evaluatePair(AST a, AST b) {
+		boolean swap = need(b) > need(a) && need(b) < CALL_NEED;
+		AST first = swap ? b : a;
+		AST second = swap ? a : b;
+		Reg64 r1 = evaluate(first);
+		Reg64 r2;
+		if (need(second) <= Integer.bitCount(_freeTemps)) {
+			r2 = evaluate(second);
+		} else {
+			_asm.add(new Push(r1));
+			free(r1);
+			r2 = evaluate(second);
+			r1 = allocate();
+			_asm.add(new Pop(r1));
+		}
+		return swap ? new Reg64[] { r2, r1 } : new Reg64[] { r1, r2 };
+	}
+
+	private int need(AST node) {
+		if (node instanceof Expression) {
+			Expression e = (Expression) node;
+			if (e.regNeed == 0) e.regNeed = computeNeed(e);
+			return e.regNeed;
+		}
+		if (node instanceof QualRef) return need(((QualRef) node).ref);
+		return 1;
+	}
+
+	private int computeNeed(Expression e) {
+		if (e instanceof BinaryExpr && ((BinaryExpr) e).operator.op == OperatorType.SHL) return need(((BinaryExpr) e).left);
+		if (e instanceof BinaryExpr) return need(need(((BinaryExpr) e).left), need(((BinaryExpr) e).right));
+		if (e instanceof IxExpr) return need(need(((IxExpr) e).ref), need(((IxExpr) e).ixExpr));
+		if (e instanceof UnaryExpr) return need(((UnaryExpr) e).expr);
+		if (e instanceof RefExpr) return need(((RefExpr) e).ref);
+		if (e instanceof NewArrayExpr) return need(((NewArrayExpr) e).sizeExpr);
+		if (e instanceof CallExpr) return CALL_NEED;
+		return 1;
 	}
 
+	private static int need(int left, int right) {
+		return left == right ? left + 1 : Math.max(left, right);
+	}
+
+	private void note(String text) {
+		if (_listingFile != null) _asm.note(text);
+		_lastNoteLine = -1;
+	}
+	
+	// the source line a statement starts on, once per line
+	private void note(Statement stmt) {
+		if (_listingFile == null || stmt.posn == null || stmt.posn.getLine() == _lastNoteLine) return;
+		_lastNoteLine = stmt.posn.getLine();
+		String text = _lastNoteLine <= _source.size() ? _source.get(_lastNoteLine - 1).trim() : "";
+		_asm.note(_lastNoteLine + ": " + text);
+	}
+	
+	private void makeListing(String fname) {
+		try (Writer out = Files.newBufferedWriter(Paths.get(fname))) {
+			_asm.writeListing(out);
+		} catch (IOException e) {
+			_errors.reportError("IOException: " + e);
+		}
+	}
+	
+	// .bss holds the static fields and then the println buffer
 	public void makeElf(String fname) {
-		ELFMaker elf = new ELFMaker(_errors, _asm.getSize(), 8); // bss ignored until PA5, set to 8
+		ELFMaker elf = new ELFMaker(_errors, _asm.getSize(), staticVars * 8 + OUT_BUFFER + 8);
+		_asm.relocate((int) elf.getBssOffset());
 		elf.outputELF(fname, _asm.getBytes(), mainAddr); // TODO: set the location of the main method
 	}
 	
-	private int makeMalloc() {
-		int idxStart = _asm.add( new Mov_rmi(new R(Reg64.RAX,true),0x09) ); // mmap
-		
+	// statics are a [rip+disp] operand, their offset counts from the start of .bss
+	private static boolean isStatic(Declaration decl) {
+		return decl instanceof FieldDecl && ((FieldDecl) decl).isStatic;
+	}
+	
+	// Inline allocation: rax gets the block at r12, then bump moves r12 past it. Only a block
+	//  running past r13 goes to the refill routine. Clobbers rax and the flags, nothing else.
+	private void makeAlloc(Instruction bump) {
+		Label done = new Label();
+		_asm.add(new Mov_rmr(new R(Reg64.RAX, Reg64.R12)));
+		_asm.add(bump);
+		_asm.add(new Cmp(new R(Reg64.R12, Reg64.R13)));
+		_asm.add(new CondJmp(Condition.LTE, done));
+		_asm.add(new Call(refillLabel));
+		_asm.bind(done);
+	}
+	
+	// unsigned, so a negative index is out of range as well
+	private void checkIndex(Reg64 arr, Reg64 idx) {
+		_asm.add(new Cmp(new R(arr, true), 0));
+		_asm.add(new CondJmp(Condition.E, faultLabel));
+		_asm.add(new Cmp(idx, new R(arr, LENGTH_OFFSET)));
+		_asm.add(new CondJmp(Condition.AE, faultLabel));
+	}
+	
+	// this is never null, anything else might be
+	private void checkNull(Reference ref, Reg64 val) {
+		if (ref instanceof ThisRef) return;
+		_asm.add(new Cmp(new R(val, true), 0));
+		_asm.add(new CondJmp(Condition.E, faultLabel));
+	}
+	
+	// Bad indices, negative array sizes, null references, division by zero and a heap that cannot
+	//  grow all end up here, before the hardware would trap. There is no exception to throw, so the
+	//  program stops with exit status 1 like an uncaught one would.
+	private Label makeFault() {
+		Label fault = new Label();
+		_asm.bind(fault);
+		_asm.add( new Call(flushLabel) ); // what was printed before the fault still comes out
+		_asm.add( new Mov_rmi(	new R(Reg64.RAX,true),60) 	); // exit
+		_asm.add( new Mov_rmi(	new R(Reg64.RDI,true),1) 	);
+		_asm.add( new Syscall() );
+		return fault;
+	}
+	
+	// Called with the block that did not fit between rax and r12. Maps a fresh chunk, big
+	//  enough for the block, and carves the block off its start. The old chunk's tail is
+	//  dropped. mmap hands out zeroed pages and nothing is freed, so new memory is always zero.
+	//  Every register but rax survives, live temporaries are not saved around allocations.
+	private Label makeRefill() {
+		Reg64[] saved = { Reg64.RDI, Reg64.RSI, Reg64.RDX, Reg64.R10, Reg64.R8, Reg64.R9, Reg64.RCX, Reg64.R11 };
+		Label refill = new Label(), big = new Label();
+		_asm.bind(refill);
+		for( Reg64 r : saved )
+			_asm.add( new Push(r) );
+		_asm.add( new Mov_rmr(	new R(Reg64.RDX,Reg64.R12)) 	);
+		_asm.add( new Sub(		new R(Reg64.RDX,Reg64.RAX)) 	); // block size
+		_asm.add( new Mov_rmr(	new R(Reg64.RSI,Reg64.RDX)) 	);
+		_asm.add( new Add(		new R(Reg64.RSI,true),0xFFF) 	);
+		_asm.add( new And(		new R(Reg64.RSI,true),-0x1000) ); // rounded up to whole pages
+		_asm.add( new Cmp(		new R(Reg64.RSI,true),HEAP_CHUNK) );
+		_asm.add( new CondJmp(Condition.GTE, big) );
+		_asm.add( new Mov_rmi(	new R(Reg64.RSI,true),HEAP_CHUNK) );
+		_asm.bind(big);
+		_asm.add( new Push(Reg64.RDX) );
+		_asm.add( new Mov_rmi(	new R(Reg64.RAX,true),0x09) ); // mmap
 		_asm.add( new Xor(		new R(Reg64.RDI,Reg64.RDI)) 	); // addr=0
-		_asm.add( new Mov_rmi(	new R(Reg64.RSI,true),0x1000) ); // 4kb alloc
 		_asm.add( new Mov_rmi(	new R(Reg64.RDX,true),0x03) 	); // prot read|write
 		_asm.add( new Mov_rmi(	new R(Reg64.R10,true),0x22) 	); // flags= private, anonymous
 		_asm.add( new Mov_rmi(	new R(Reg64.R8, true),-1) 	); // fd= -1
 		_asm.add( new Xor(		new R(Reg64.R9,Reg64.R9)) 	); // offset=0
 		_asm.add( new Syscall() );
-		
-		// pointer to newly allocated memory is in RAX
-		// return the index of the first instruction in this method, if needed
-		return idxStart;
+		_asm.add( new Cmp(		new R(Reg64.RAX,true),0) 		);
+		_asm.add( new CondJmp(Condition.LT, faultLabel) ); // -errno, the heap cannot grow
+		_asm.add( new Pop(Reg64.RDX) );
+		_asm.add( new Lea(		new R(Reg64.RAX,Reg64.RSI,1,0,Reg64.R13)) ); // end of the chunk
+		_asm.add( new Lea(		new R(Reg64.RAX,Reg64.RDX,1,0,Reg64.R12)) ); // end of the block
+		for( int i = saved.length - 1; i >= 0; --i )
+			_asm.add( new Pop(saved[i]) );
+		_asm.add( new Ret() );
+		return refill;
 	}
 	
-	private int makePrintln() {
+	private Label makePrintln() {
 		// TODO: how can we generate the assembly to println?
-		int addr = _asm.add(new Mov_rmi(new R(Reg64.RAX, true), 1));
-		_asm.add(new Mov_rmi(new R(Reg64.RDI, true), 1));
-		_asm.add(new Mov_rrm(new R(Reg64.R15, Reg64.RSI)));
-		_asm.add(new Mov_rmi(new R(Reg64.RDX, true), 1));
-		_asm.add(new Syscall());
-//		_asm.add(new Mov_rmi(new R(Reg64.R14, true), 10));
-//		_asm.add(new Mov_rmr(new R(Reg64.R15, 0, Reg64.R14)));
-//		_asm.add(new Syscall());
-		_asm.add(new Ret());
-		return addr;
+		// the value is the only argument, sitting just above the return address. It is printed
+		//  as the int Java would have, in decimal, and goes to stdout once the buffer fills up
+		Label println = new Label(), positive = new Label(), digit = new Label(), copy = new Label();
+		_asm.bind(println);
+		_asm.add( new Movsxd(	new R(Reg64.RSP,8,Reg64.RAX)) 	);
+		_asm.add( new Sub(		new R(Reg64.RSP,true),24) 	); // the text is built backwards from rsp+24
+		_asm.add( new Lea(		new R(Reg64.RSP,23,Reg64.RDI)) 	);
+		_asm.add( new Mov_rmi(	new R(Reg64.RDX,true),'\n') 	);
+		_asm.add( new Mov_rmr(	new R(Reg64.RDI,0,Reg8.DL)) 	);
+		_asm.add( new Mov_rmr(	new R(Reg64.RCX,Reg64.RAX)) 	); // keep the sign
+		_asm.add( new Cmp(		new R(Reg64.RAX,true),0) 	);
+		_asm.add( new CondJmp(Condition.GTE, positive) );
+		_asm.add( new Neg(		new R(Reg64.RAX,true)) 		);
+		_asm.bind(positive);
+		_asm.add( new Mov_rmi(	new R(Reg64.R8,true),10) 	);
+		_asm.bind(digit);
+		_asm.add( new Cqo() );
+		_asm.add( new Idiv(		new R(Reg64.R8,true)) 		);
+		_asm.add( new Add(		new R(Reg64.RDX,true),'0') 	);
+		_asm.add( new Sub(		new R(Reg64.RDI,true),1) 	);
+		_asm.add( new Mov_rmr(	new R(Reg64.RDI,0,Reg8.DL)) 	);
+		_asm.add( new Cmp(		new R(Reg64.RAX,true),0) 	);
+		_asm.add( new CondJmp(Condition.NE, digit) );
+		_asm.add( new Cmp(		new R(Reg64.RCX,true),0) 	);
+		_asm.add( new CondJmp(Condition.GTE, copy) );
+		_asm.add( new Sub(		new R(Reg64.RDI,true),1) 	);
+		_asm.add( new Mov_rmi(	new R(Reg64.RDX,true),'-') 	);
+		_asm.add( new Mov_rmr(	new R(Reg64.RDI,0,Reg8.DL)) 	);
+		_asm.bind(copy);
+		// at most 12 bytes ("-2147483648\n"), moved as two words into the slack kept at the end
+		_asm.add( new Mov_rrm(	new R(Reg64.R14,0,Reg64.RDX)) 	);
+		_asm.add( new Lea(		new R(Reg64.R14,Reg64.RDX,1,8,Reg64.RSI)) );
+		_asm.add( new Mov_rrm(	new R(Reg64.RDI,0,Reg64.RAX)) 	);
+		_asm.add( new Mov_rmr(	new R(Reg64.RSI,0,Reg64.RAX)) 	);
+		_asm.add( new Mov_rrm(	new R(Reg64.RDI,8,Reg64.RAX)) 	);
+		_asm.add( new Mov_rmr(	new R(Reg64.RSI,8,Reg64.RAX)) 	);
+		_asm.add( new Lea(		new R(Reg64.RSP,24,Reg64.RAX)) 	);
+		_asm.add( new Sub(		new R(Reg64.RAX,Reg64.RDI)) 	); // length of the text
+		_asm.add( new Add(		new R(Reg64.RDX,Reg64.RAX)) 	);
+		_asm.add( new Mov_rmr(	new R(Reg64.R14,0,Reg64.RDX)) 	);
+		_asm.add( new Add(		new R(Reg64.RSP,true),24) 	);
+		_asm.add( new Cmp(		new R(Reg64.RDX,true),OUT_BUFFER - 32) );
+		_asm.add( new CondJmp(Condition.GT, flushLabel) ); // flush returns to our caller
+		_asm.add( new Ret() );
+		return println;
+	}
+	
+	// Writes out whatever println left in the buffer and empties it. A write that fails drops
+	//  the rest, there is nowhere else to send it. Clobbers rax, rcx, rdx, rsi, rdi and r11.
+	private Label makeFlush() {
+		Label flush = new Label(), write = new Label(), done = new Label();
+		_asm.bind(flush);
+		_asm.add( new Lea(		new R(Reg64.R14,8,Reg64.RSI)) 	);
+		_asm.add( new Mov_rrm(	new R(Reg64.R14,0,Reg64.RDX)) 	);
+		_asm.add( new Mov_rmi(	new R(Reg64.R14,0),0,true) 	);
+		_asm.bind(write);
+		_asm.add( new Cmp(		new R(Reg64.RDX,true),0) 	);
+		_asm.add( new CondJmp(Condition.LTE, done) );
+		_asm.add( new Mov_rmi(	new R(Reg64.RAX,true),1) 	); // write
+		_asm.add( new Mov_rmi(	new R(Reg64.RDI,true),1) 	); // stdout
+		_asm.add( new Syscall() );
+		_asm.add( new Cmp(		new R(Reg64.RAX,true),0) 	);
+		_asm.add( new CondJmp(Condition.LTE, done) );
+		_asm.add( new Add(		new R(Reg64.RSI,Reg64.RAX)) 	);
+		_asm.add( new Sub(		new R(Reg64.RDX,Reg64.RAX)) 	);
+		_asm.add( new Jmp(write) );
+		_asm.bind(done);
+		_asm.add( new Ret() );
+		return flush;
 	}
 
 }
@@ -0,0 +1,342 @@
+package miniJava.CodeGeneration;
+
+import miniJava.AbstractSyntaxTrees.*;
+import miniJava.AbstractSyntaxTrees.Package;
+import miniJava.SyntacticAnalyzer.OperatorType;
+
+// Runs between type checking and code generation. Expressions visit to their replacement,
+//  statements store whatever their expressions came back as. Folding happens in 64 bits like
+//  the generated code, and a result that no longer fits an int is left for runtime.
+public class ConstantFolding implements Visitor<Object, Object> {
+
+	public void runConstantFolding(Package p) {
+		p.visit(this, null);
+	}
+
+	private Expression fold(Expression e) {
+		return (Expression) e.visit(this, null);
+	}
+
+	private void foldAll(ExprList args) {
+		for (int i = 0; i < args.size(); i++)
+			args.set(i, fold(args.get(i)));
+	}
+
+	@Override
+	public Object visitPackage(Package prog, Object arg) {
+		prog.classDeclList.forEach(cd -> cd.visit(this, null));
+		return null;
+	}
+
+	@Override
+	public Object visitClassDecl(ClassDecl cd, Object arg) {
+		cd.methodDeclList.forEach(md -> md.visit(this, null));
+		return null;
+	}
+
+	@Override
+	public Object visitFieldDecl(FieldDecl fd, Object arg) {
+		return null;
+	}
+
+	@Override
+	public Object visitMethodDecl(MethodDecl md, Object arg) {
+		md.statementList.forEach(s -> s.visit(this, null));
+		return null;
+	}
+
+	@Override
+	public Object visitParameterDecl(ParameterDecl pd, Object arg) {
+		return null;
+	}
+
+	@Override
+	public Object visitVarDecl(VarDecl decl, Object arg) {
+		return null;
+	}
+
+	@Override
+	public Object visitBaseType(BaseType type, Object arg) {
+		return null;
+	}
+
+	@Override
+	public Object visitClassType(ClassType type, Object arg) {
+		return null;
+	}
+
+	@Override
+	public Object visitArrayType(ArrayType type, Object arg) {
+		return null;
+	}
+
+	@Override
+	public Object visitBlockStmt(BlockStmt stmt, Object arg) {
+		stmt.sl.forEach(s -> s.visit(this, null));
+		return null;
+	}
+
+	@Override
+	public Object visitVardeclStmt(VarDeclStmt stmt, Object arg) {
+		stmt.initExp = fold(stmt.initExp);
+		return null;
+	}
+
+	@Override
+	public Object visitAssignStmt(AssignStmt stmt, Object arg) {
+		stmt.val = fold(stmt.val);
+		return null;
+	}
+
+	@Override
+	public Object visitIxAssignStmt(IxAssignStmt stmt, Object arg) {
+		stmt.ix = fold(stmt.ix);
+		stmt.exp = fold(stmt.exp);
+		return null;
+	}
+
+	@Override
+	public Object visitCallStmt(CallStmt stmt, Object arg) {
+		foldAll(stmt.argList);
+		return null;
+	}
+
+	@Override
+	public Object visitReturnStmt(ReturnStmt stmt, Object arg) {
+		if (stmt.returnExpr != null) stmt.returnExpr = fold(stmt.returnExpr);
+		return null;
+	}
+
+	@Override
+	public Object visitIfStmt(IfStmt stmt, Object arg) {
+		stmt.cond = fold(stmt.cond);
+		stmt.thenStmt.visit(this, null);
+		if (stmt.elseStmt != null) stmt.elseStmt.visit(this, null);
+		return null;
+	}
+
+	@Override
+	public Object visitWhileStmt(WhileStmt stmt, Object arg) {
+		stmt.cond = fold(stmt.cond);
+		stmt.body.visit(this, null);
+		return null;
+	}
+
+	@Override
+	public Object visitUnaryExpr(UnaryExpr expr, Object arg) {
+		expr.expr = fold(expr.expr);
+		Expression e = expr.expr;
+		if (expr.operator.op == OperatorType.MINUS) {
+			// -2147483648, the literal on its own is not an int
+			if (isInt(e) && ((IntLiteral) ((LiteralExpr) e).lit).isMinValueMagnitude()) return intLiteral(Integer.MIN_VALUE, expr);
+			if (isInt(e)) return intLiteral(-(long) intValue(e), expr);
+			// -(-x)
+			if (e instanceof UnaryExpr && ((UnaryExpr) e).operator.op == OperatorType.MINUS) return ((UnaryExpr) e).expr;
+		} else if (expr.operator.op == OperatorType.NOT) {
+			if (isBool(e)) return new LiteralExpr(new BooleanLiteral(!boolValue(e), expr.posn), expr.posn);
+			if (e instanceof UnaryExpr && ((UnaryExpr) e).operator.op == OperatorType.NOT) return ((UnaryExpr) e).expr;
+		}
+		return expr;
+	}
+
+	@Override
+	public Object visitBinaryExpr(BinaryExpr expr, Object arg) {
+		expr.left = fold(expr.left);
+		expr.right = fold(expr.right);
+		Expression l = expr.left, r = expr.right;
+
+		if (isInt(l) && isInt(r)) {
+			long a = intValue(l), b = intValue(r);
+			switch (expr.operator.op) {
+				case PLUS: return intLiteral(a + b, expr);
+				case MINUS: return intLiteral(a - b, expr);
+				case TIMES: return intLiteral(a * b, expr);
+				case DIVIDE: return b == 0 ? expr : intLiteral(a / b, expr); // division by zero stays a runtime fault
+				case LT: return boolLiteral(a < b, expr);
+				case LTE: return boolLiteral(a <= b, expr);
+				case GT: return boolLiteral(a > b, expr);
+				case GTE: return boolLiteral(a >= b, expr);
+				case EQEQ: return boolLiteral(a == b, expr);
+				case NOTEQ: return boolLiteral(a != b, expr);
+			}
+		}
+		if (isBool(l) && isBool(r)) {
+			boolean a = boolValue(l), b = boolValue(r);
+			switch (expr.operator.op) {
+				case ANDAND: return boolLiteral(a && b, expr);
+				case OROR: return boolLiteral(a || b, expr);
+				case EQEQ: return boolLiteral(a == b, expr);
+				case NOTEQ: return boolLiteral(a != b, expr);
+			}
+		}
+
+		// identities, an operand is only dropped when evaluating it could not have done anything
+		switch (expr.operator.op) {
+			case ANDAND:
+				if (isBool(l)) return boolValue(l) ? r : l;
+				if (isBool(r) && boolValue(r)) return l;
+				if (isBool(r) && isPure(l)) return r;
+				break;
+			case OROR:
+				if (isBool(l)) return boolValue(l) ? l : r;
+				if (isBool(r) && !boolValue(r)) return l;
+				if (isBool(r) && isPure(l)) return r;
+				break;
+			case PLUS:
+				if (isInt(l, 0)) return r;
+				if (isInt(r, 0)) return l;
+				break;
+			case MINUS:
+				if (isInt(r, 0)) return l;
+				if (isInt(l, 0)) return negate(r, expr);
+				break;
+			case TIMES:
+				if (isInt(l)) {
+					// constant on the right from here on
+					expr.left = r;
+					expr.right = l;
+					l = expr.left;
+					r = expr.right;
+				}
+				if (isInt(r, 1)) return l;
+				if (isInt(r, -1)) return negate(l, expr);
+				if (isInt(r, 0) && isPure(l)) return r;
+				if (isInt(r) && intValue(r) > 0 && Integer.bitCount(intValue(r)) == 1) {
+					// x * 2^k is x << k
+					expr.operator.op = OperatorType.SHL;
+					expr.operator.spelling = OperatorType.SHL.spelling;
+					expr.right = intLiteral(Integer.numberOfTrailingZeros(intValue(r)), r);
+				}
+				break;
+			case DIVIDE:
+				if (isInt(r, 1)) return l;
+				if (isInt(r, -1)) return negate(l, expr);
+				break;
+		}
+		return expr;
+	}
+
+	@Override
+	public Object visitRefExpr(RefExpr expr, Object arg) {
+		return expr;
+	}
+
+	@Override
+	public Object visitIxExpr(IxExpr expr, Object arg) {
+		expr.ixExpr = fold(expr.ixExpr);
+		return expr;
+	}
+
+	@Override
+	public Object visitCallExpr(CallExpr expr, Object arg) {
+		foldAll(expr.argList);
+		return expr;
+	}
+
+	@Override
+	public Object visitLiteralExpr(LiteralExpr expr, Object arg) {
+		return expr;
+	}
+
+	@Override
+	public Object visitNewObjectExpr(NewObjectExpr expr, Object arg) {
+		return expr;
+	}
+
+	@Override
+	public Object visitNewArrayExpr(NewArrayExpr expr, Object arg) {
+		expr.sizeExpr = fold(expr.sizeExpr);
+		return expr;
+	}
+
+	@Override
+	public Object visitThisRef(ThisRef ref, Object arg) {
+		return ref;
+	}
+
+	@Override
+	public Object visitIdRef(IdRef ref, Object arg) {
+		return ref;
+	}
+
+	@Override
+	public Object visitQRef(QualRef ref, Object arg) {
+		return ref;
+	}
+
+	@Override
+	public Object visitNullRef(NullRef ref, Object arg) {
+		return ref;
+	}
+
+	@Override
+	public Object visitIdentifier(Identifier id, Object arg) {
+		return null;
+	}
+
+	@Override
+	public Object visitOperator(Operator op, Object arg) {
+		return null;
+	}
+
+	@Override
+	public Object visitIntLiteral(IntLiteral num, Object arg) {
+		return null;
+	}
+
+	@Override
+	public Object visitBooleanLiteral(BooleanLiteral bool, Object arg) {
+		return null;
+	}
+
+	private static boolean isInt(Expression e) {
+		return e instanceof LiteralExpr && ((LiteralExpr) e).lit instanceof IntLiteral;
+	}
+
+	private static boolean isInt(Expression e, int v) {
+		return isInt(e) && intValue(e) == v;
+	}
+
+	private static int intValue(Expression e) {
+		return ((IntLiteral) ((LiteralExpr) e).lit).value;
+	}
+
+	private static boolean isBool(Expression e) {
+		return e instanceof LiteralExpr && ((LiteralExpr) e).lit instanceof BooleanLiteral;
+	}
+
+	private static boolean boolValue(Expression e) {
+		return ((BooleanLiteral) ((LiteralExpr) e).lit).value;
+	}
+
+	// the folded value, or the expression unchanged if the value does not fit an int
+	private static Expression intLiteral(long v, Expression expr) {
+		if (v != (int) v) return expr;
+		return new LiteralExpr(new IntLiteral((int) v, expr.posn), expr.posn);
+	}
+
+	private static Expression boolLiteral(boolean v, Expression expr) {
+		return new LiteralExpr(new BooleanLiteral(v, expr.posn), expr.posn);
+	}
+
+	private static Expression negate(Expression e, BinaryExpr like) {
+		Operator minus = like.operator;
+		minus.op = OperatorType.MINUS;
+		minus.spelling = OperatorType.MINUS.spelling;
+		return new UnaryExpr(minus, e, like.posn);
+	}
+
+	// no calls, allocations or memory that might not be there, so dropping it changes nothing
+	private static boolean isPure(Expression e) {
+		if (e instanceof LiteralExpr) return true;
+		if (e instanceof RefExpr)
+			return ((RefExpr) e).ref instanceof IdRef || ((RefExpr) e).ref instanceof ThisRef;
+		if (e instanceof UnaryExpr) return isPure(((UnaryExpr) e).expr);
+		if (e instanceof BinaryExpr) {
+			BinaryExpr b = (BinaryExpr) e;
+			if (b.operator.op == OperatorType.DIVIDE && (!isInt(b.right) || intValue(b.right) == 0)) return false;
+			return isPure(b.left) && isPure(b.right);
+		}
+		return false;
+	}
+}
@@ -1,9 +1,12 @@
 package miniJava.CodeGeneration;
 
 import java.io.ByteArrayOutputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 
 import miniJava.ErrorReporter;
@@ -21,6 +24,7 @@ public class ELFMaker {
 	private ELFSection shstrtab = new ELFSection();
 	private ELFSegment phdr = new ELFSegment();
 	private ELFSegment textSeg = new ELFSegment();
+	private ELFSegment bssSeg = new ELFSegment();
 	private long phStartAddress = 0x40;
 	private long shStartAddress;
 	private long sdataStartAddress;
@@ -34,6 +38,7 @@ public class ELFMaker {
 		
 		segments.add(phdr);
 		segments.add(textSeg);
+		segments.add(bssSeg);
 		
 		// next is the .text
 		text.sectionName = ".text";
@@ -69,6 +74,9 @@ public class ELFMaker {
 		long vSectionSizes = 0;
 		int secIdx = 0;
 		for( ELFSection sh : sections ) {
+			// .bss is its own writable segment, so it may not share a page with the text
+			if( sh == bss )
+				vSectionSizes = pageAlign(sdataStartAddress + vSectionSizes) - sdataStartAddress;
 			sh.sh_addr = sdataStartAddress + vSectionSizes;
 			sh.sh_offset = sdataStartAddress + pSectionSizes;
 			sh.secIdx = secIdx;
@@ -78,8 +86,7 @@ public class ELFMaker {
 			vSectionSizes += sh.sh_size;
 		}
 		
-		// I mean, it isn't really bss, it's got/plt, but it will eventually
-		// resolve to bss when we check RIP+(entry-textStart+textSize)
+		// code reaches bss at RIP+(bssOffset-end of the instruction), the image is position independent
 		bssOffset = bss.sh_addr - text.sh_addr;
 	}
 	
@@ -110,32 +117,48 @@ public class ELFMaker {
 		textSeg.p_filesz = text.sh_size;
 		textSeg.p_memsz = text.sh_size;
 		
+		// nothing in the file, the loader maps zeroed pages. p_offset only has to agree with
+		//  p_vaddr modulo the page size
+		bssSeg.p_type = PT_LOAD;
+		bssSeg.p_flags = PF_R | PF_W;
+		bssSeg.p_offset = bss.sh_offset & -PAGE_SIZE;
+		bssSeg.p_vaddr = bss.sh_addr;
+		bssSeg.p_paddr = bss.sh_addr;
+		bssSeg.p_filesz = 0;
+		bssSeg.p_memsz = bss.sh_size;
+		bssSeg.p_align = PAGE_SIZE;
+		
 		elf.e_entry = text.sh_addr + entrypoint;
 		elf.e_shoff = shStartAddress;
 		elf.e_phnum = (short)segments.size();
 		elf.e_shnum = (short)sections.size();
 		elf.e_shstrndx = (short)shstrtab.secIdx;
 		
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		writeELF(out,elf);
+		// the headers and both tables end exactly where the section data starts
+		ByteBuffer headers = ByteBuffer.allocate((int)sdataStartAddress).order(ByteOrder.LITTLE_ENDIAN);
+		writeELF(headers,elf);
 		for( ELFSegment ph : segments )
-			writeSegment(out,ph);
+			writeSegment(headers,ph);
 		for( ELFSection sh : sections )
-			writeSection(out,sh);
+			writeSection(headers,sh);
+		headers.flip();
 		
-		// dump out each section's data now
+		// each section's data goes out of the array it already lives in, nothing is copied
+		ArrayList<ByteBuffer> out = new ArrayList<ByteBuffer>();
+		out.add(headers);
+		long fileSize = headers.remaining();
 		for( ELFSection sh : sections ) {
 			if( sh.data == null || sh.sh_size == 0 )
 				continue;
-			write(out,sh.data);
+			out.add( ByteBuffer.wrap(sh.data, 0, (int)sh.sh_size) );
+			fileSize += sh.sh_size;
 		}
+		ByteBuffer[] parts = out.toArray(new ByteBuffer[0]);
 		
-		try {
-			FileOutputStream f = new FileOutputStream(fname);
-			f.write( out.toByteArray() );
-			f.close();
-		} catch( FileNotFoundException e) {
-			_errors.reportError("FileNotFoundException: " + e);
+		try( FileChannel f = FileChannel.open(Paths.get(fname), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING) ) {
+			while( fileSize > 0 )
+				fileSize -= f.write(parts);
 		} catch (IOException e) {
 			_errors.reportError("IOException: " + e);
 		}
@@ -145,17 +168,19 @@ public class ELFMaker {
 		return bssOffset;
 	}
 	
+	private static long pageAlign(long addr) {
+		return (addr + PAGE_SIZE - 1) & -PAGE_SIZE;
+	}
+	
 	private byte[] makeSectionStrings(ArrayList<ELFSection> sections) {
 		ByteArrayOutputStream b = new ByteArrayOutputStream();
-		_b = b;
 		for( ELFSection e : sections ) {
 			e.sh_name = b.size();
 			if( e.sectionName != null )
-				write(e.sectionName);
+				x64.writeString(b, e.sectionName);
 			else
-				write((byte)0);
+				b.write(0);
 		}
-		_b = null;
 		return b.toByteArray();
 	}
 	
@@ -211,7 +236,7 @@ public class ELFMaker {
 		public int secIdx;
 	}
 	
-	private void writeELF(ByteArrayOutputStream b, ELF e) {
+	private void writeELF(ByteBuffer b, ELF e) {
 		_b = b;
 		write(e.ei_magic);
 		write(e.ei_class);
@@ -236,7 +261,7 @@ public class ELFMaker {
 		_b = null;
 	}
 	
-	private void writeSegment(ByteArrayOutputStream b, ELFSegment e) {
+	private void writeSegment(ByteBuffer b, ELFSegment e) {
 		_b = b;
 		write(e.p_type);
 		write(e.p_flags);
@@ -249,7 +274,7 @@ public class ELFMaker {
 		_b = null;
 	}
 	
-	private void writeSection(ByteArrayOutputStream b, ELFSection e) {
+	private void writeSection(ByteBuffer b, ELFSection e) {
 		_b = b;
 		write(e.sh_name);
 		write(e.sh_type);
@@ -264,43 +289,22 @@ public class ELFMaker {
 		_b = null;
 	}
 	
-	// Below are methods to maximize laziness
-	private ByteArrayOutputStream _b = null;
+	// Below are methods to maximize laziness, _b is little endian so these are bulk puts
+	private ByteBuffer _b = null;
 	private void write(int v) {
-		write(_b,v);
+		_b.putInt(v);
 	}
 	private void write(long v) {
-		write(_b,v);
+		_b.putLong(v);
 	}
 	private void write(byte v) {
-		write(_b,v);
+		_b.put(v);
 	}
 	private void write(byte[] v) {
-		write(_b,v);
+		_b.put(v);
 	}
 	private void write(short v) {
-		write(_b,v);
-	}
-	private void write(String v) {
-		write(_b,v);
-	}
-	private void write(ByteArrayOutputStream b, int v) {
-		x64.writeInt(b, v);
-	}
-	private void write(ByteArrayOutputStream b, long v) {
-		x64.writeLong(b, v);
-	}
-	private void write(ByteArrayOutputStream b, byte v) {
-		b.write(v);
-	}
-	private void write(ByteArrayOutputStream b, byte[] v) {
-		x64.writeBytes(b, v);
-	}
-	private void write(ByteArrayOutputStream b, short v) {
-		x64.writeShort(b, v);
-	}
-	private void write(ByteArrayOutputStream b, String v) {
-		x64.writeString(b, v);
+		_b.putShort(v);
 	}
 	
 	private static final int PT_NULL 	= 0;
@@ -311,6 +315,8 @@ public class ELFMaker {
 	private static final int PT_PHDR 	= 6;
 	private static final int PT_TLS 	= 7;
 	
+	private static final long PAGE_SIZE = 0x1000;
+	
 	private static final int PF_X = 1;
 	private static final int PF_W = 2;
 	private static final int PF_R = 4;
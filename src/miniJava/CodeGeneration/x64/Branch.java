@@ -0,0 +1,12 @@
+package miniJava.CodeGeneration.x64;
+
+// A jmp, jcc or call to a Label. InstructionList.layout picks the encoding once addresses are known.
+public interface Branch {
+	public Label getTarget();
+	
+	// size of the rel8 or rel32 encoding, the same for both when there is no short form
+	public int encodedSize(boolean asByte);
+	
+	// rel is the offset from the end of this instruction
+	public void encode(int rel, boolean asByte);
+}
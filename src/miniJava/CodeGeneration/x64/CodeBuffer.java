@@ -0,0 +1,48 @@
+package miniJava.CodeGeneration.x64;
+
+import java.util.Arrays;
+
+// A growable run of bytes with no locking and no copy to read it back. Instructions keep their
+//  encoding in small ones, InstructionList lays the whole program out in a single big one.
+public class CodeBuffer {
+	private byte[] _buf;
+	private int _size = 0;
+	
+	public CodeBuffer(int capacity) {
+		_buf = new byte[capacity];
+	}
+	
+	public void write(int b) {
+		if( _size == _buf.length )
+			_buf = Arrays.copyOf(_buf, Math.max(4, _buf.length * 2));
+		_buf[_size++] = (byte) b;
+	}
+	
+	public void write(byte[] b, int off, int len) {
+		if( _size + len > _buf.length )
+			_buf = Arrays.copyOf(_buf, Math.max(_size + len, _buf.length * 2));
+		System.arraycopy(b, off, _buf, _size, len);
+		_size += len;
+	}
+	
+	public void write(CodeBuffer b) {
+		write(b._buf, 0, b._size);
+	}
+	
+	public int size() {
+		return _size;
+	}
+	
+	public void reset() {
+		_size = 0;
+	}
+	
+	// the bytes themselves, only the first size() of them mean anything
+	public byte[] array() {
+		return _buf;
+	}
+	
+	public byte[] toByteArray() {
+		return Arrays.copyOf(_buf, _size);
+	}
+}
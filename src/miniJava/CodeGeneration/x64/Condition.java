@@ -8,29 +8,41 @@ public enum Condition {
 	LT,
 	LTE,
 	GT,
-	GTE;
+	GTE,
+	AE; // unsigned, a bounds check catches negative indices with it too
+	
+	// the jcc/setcc suffix
+	public String suffix() {
+		switch( this ) {
+		case LT: return "l";
+		case LTE: return "le";
+		case GT: return "g";
+		case GTE: return "ge";
+		default: return name().toLowerCase();
+		}
+	}
 	
 	public static Condition getOppositeCond(Operator op) {
-		switch( op.spelling ) {
-		case ">": return Condition.LTE;
-		case ">=": return Condition.LT;
-		case "<": return Condition.GTE;
-		case "<=": return Condition.GT;
-		case "==": return Condition.NE;
-		case "!=": return Condition.E;
+		switch( op.op ) {
+		case GT: return Condition.LTE;
+		case GTE: return Condition.LT;
+		case LT: return Condition.GTE;
+		case LTE: return Condition.GT;
+		case EQEQ: return Condition.NE;
+		case NOTEQ: return Condition.E;
 		};
 		
 		return null;
 	}
 	
 	public static Condition getCond(Operator op) {
-		switch( op.spelling ) {
-		case ">": return Condition.GT;
-		case ">=": return Condition.GTE;
-		case "<": return Condition.LT;
-		case "<=": return Condition.LTE;
-		case "==": return Condition.E;
-		case "!=": return Condition.NE;
+		switch( op.op ) {
+		case GT: return Condition.GT;
+		case GTE: return Condition.GTE;
+		case LT: return Condition.LT;
+		case LTE: return Condition.LTE;
+		case EQEQ: return Condition.E;
+		case NOTEQ: return Condition.NE;
 		};
 		
 		return null;
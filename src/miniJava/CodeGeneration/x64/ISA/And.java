@@ -1,6 +1,7 @@
 package miniJava.CodeGeneration.x64.ISA;
 
 import miniJava.CodeGeneration.x64.R;
+import miniJava.CodeGeneration.x64.Reg;
 
 public class And extends SimpleMathInstruction {
 	@Override
@@ -19,4 +20,8 @@ public class And extends SimpleMathInstruction {
 	public And(R modrmsib, int imm, boolean signExtend) {
 		super(modrmsib,imm,signExtend);
 	}
+	
+	public And(Reg r, R modrmsib) {
+		super(r,modrmsib);
+	}
 }
@@ -1,26 +1,71 @@
 package miniJava.CodeGeneration.x64.ISA;
 
+import miniJava.CodeGeneration.x64.Branch;
 import miniJava.CodeGeneration.x64.Instruction;
+import miniJava.CodeGeneration.x64.Label;
 import miniJava.CodeGeneration.x64.R;
 import miniJava.CodeGeneration.x64.x64;
 
-public class Call extends Instruction {
+public class Call extends Instruction implements Branch {
+	public final Integer rel; // offset from the next instruction, null for an indirect call or a label
+	private final Label _target;
+	public final R rm; // the indirect form, null otherwise
+	
+	// call label, the offset is filled in by InstructionList.layout
+	public Call(Label target) {
+		this.rel = null;
+		this._target = target;
+		this.rm = null;
+		encode(0, false);
+	}
+	
 	public Call(int offset) {
+		this.rel = offset;
+		this._target = null;
+		this.rm = null;
 		opcodeBytes.write(0xE8);
 		x64.writeInt(immBytes,offset);
 	}
 	
 	public Call(int curAddr, int destAddr) {
+		this.rel = destAddr - curAddr - 5;
+		this._target = null;
+		this.rm = null;
 		opcodeBytes.write(0xE8);
 		x64.writeInt(immBytes, destAddr - curAddr - 5);
 	}
 	
 	public Call(R modrmsib) {
+		this.rel = null;
+		this._target = null;
+		this.rm = modrmsib;
 		opcodeBytes.write(0xFF);
 		
 		modrmsib.SetRegR(x64.mod543ToReg(2));
-		byte[] rmsib = modrmsib.getBytes();
 		importREX(modrmsib);
-		x64.writeBytes(immBytes,rmsib);
+		modrmsib.writeTo(immBytes);
+	}
+	
+	@Override
+	public Label getTarget() {
+		return _target;
+	}
+	
+	// there is no rel8 call
+	@Override
+	public int encodedSize(boolean asByte) {
+		return 5;
+	}
+	
+	@Override
+	public void encode(int rel, boolean asByte) {
+		reset();
+		opcodeBytes.write(0xE8);
+		x64.writeInt(immBytes, rel);
+	}
+	
+	@Override
+	public String toString() {
+		return "call " + ( rm != null ? operand(rm, 8) : target() );
 	}
 }
@@ -1,6 +1,7 @@
 package miniJava.CodeGeneration.x64.ISA;
 
 import miniJava.CodeGeneration.x64.R;
+import miniJava.CodeGeneration.x64.Reg;
 
 public class Cmp extends SimpleMathInstruction {
 	@Override
@@ -15,4 +16,12 @@ public class Cmp extends SimpleMathInstruction {
 	public Cmp(R modrmsib, int imm) {
 		super(modrmsib,imm);
 	}
+	
+	public Cmp(Reg r, R modrmsib) {
+		super(r,modrmsib);
+	}
+	
+	public Cmp(R modrmsib, int imm, boolean rexW) {
+		super(modrmsib,imm,rexW);
+	}
 }
@@ -1,22 +1,45 @@
 package miniJava.CodeGeneration.x64.ISA;
 
+import miniJava.CodeGeneration.x64.Branch;
 import miniJava.CodeGeneration.x64.Condition;
 import miniJava.CodeGeneration.x64.Instruction;
+import miniJava.CodeGeneration.x64.Label;
 import miniJava.CodeGeneration.x64.x64;
 
-public class CondJmp extends Instruction {
+public class CondJmp extends Instruction implements Branch {
+	public final Condition cond;
+	public final Integer rel; // offset from the next instruction, null when jumping to a label
+	private final Label _target;
+	
+	// jcc label, the offset is filled in by InstructionList.layout
+	public CondJmp(Condition cond, Label target) {
+		this.cond = cond;
+		this.rel = null;
+		this._target = target;
+		encode(0, false);
+	}
+	
 	public CondJmp(Condition cond, byte rel8) {
+		this.cond = cond;
+		this.rel = (int) rel8;
+		this._target = null;
 		opcodeBytes.write(getImm32Opcode(cond) - 0x10);
 		immBytes.write(rel8);
 	}
 	
 	public CondJmp(Condition cond, int rel32) {
+		this.cond = cond;
+		this.rel = rel32;
+		this._target = null;
 		opcodeBytes.write(0x0F);
 		opcodeBytes.write(getImm32Opcode(cond));
 		x64.writeInt(immBytes,rel32);
 	}
 	
 	public CondJmp(Condition cond, int curAddr, int destAddr, boolean asByte) {
+		this.cond = cond;
+		this.rel = destAddr - curAddr - (asByte ? 2 : 6);
+		this._target = null;
 		if( asByte ) {
 			opcodeBytes.write( getImm32Opcode(cond) - 0x10 );
 			immBytes.write( destAddr - curAddr - 2 );
@@ -27,7 +50,31 @@ public class CondJmp extends Instruction {
 		x64.writeInt(immBytes, destAddr - curAddr - 6);
 	}
 	
+	@Override
+	public Label getTarget() {
+		return _target;
+	}
+	
+	@Override
+	public int encodedSize(boolean asByte) {
+		return asByte ? 2 : 6;
+	}
+	
+	@Override
+	public void encode(int rel, boolean asByte) {
+		reset();
+		if( asByte ) {
+			opcodeBytes.write( getImm32Opcode(cond) - 0x10 );
+			immBytes.write(rel);
+			return;
+		}
+		opcodeBytes.write(0x0F);
+		opcodeBytes.write(getImm32Opcode(cond));
+		x64.writeInt(immBytes, rel);
+	}
+	
 	// imm32
+	// 83:     jae       / jnb, jnc
 	// 84, 85: jz, jnz   / je, jne
 	// 8C, 8D: jl, jnl   / jnge, jge
 	// 8E, 8F: jle, jnle / jng, jg
@@ -40,8 +87,14 @@ public class CondJmp extends Instruction {
 		case GTE: return 0x8D;
 		case LTE: return 0x8E;
 		case GT: return 0x8F;
+		case AE: return 0x83;
 		}
 		
 		throw new IllegalArgumentException("Illegal operator: " + cond);
 	}
+	
+	@Override
+	public String toString() {
+		return "j" + cond.suffix() + " " + target();
+	}
 }
@@ -5,15 +5,21 @@ import miniJava.CodeGeneration.x64.R;
 import miniJava.CodeGeneration.x64.x64;
 
 public class Idiv extends Instruction {
+	public final R rm;
 	
 	// Solve: RDX:RAX / rm
 	// RAX:= quotient
 	// RDX:= remainder
 	public Idiv(R modrmsib) {
+		this.rm = modrmsib;
 		opcodeBytes.write(0xF7);
 		modrmsib.SetRegR(x64.mod543ToReg(7));
-		byte[] rmsib = modrmsib.getBytes();
 		importREX(modrmsib);
-		x64.writeBytes(immBytes,rmsib);
+		modrmsib.writeTo(immBytes);
+	}
+	
+	@Override
+	public String toString() {
+		return "idiv " + operand(rm);
 	}
 }
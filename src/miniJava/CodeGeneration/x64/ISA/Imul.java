@@ -6,31 +6,41 @@ import miniJava.CodeGeneration.x64.Reg;
 import miniJava.CodeGeneration.x64.x64;
 
 public class Imul extends Instruction {
+	public final Reg reg; // null for the one operand form
+	public final R rm;
+	public final Integer imm;
+	
 	// imul rm, where RDX:RAX:= RAX * rm
 	public Imul(R rm) {
+		this.reg = null;
+		this.rm = rm;
+		this.imm = null;
 		rm.SetRegR(x64.mod543ToReg(5));
 		opcodeBytes.write(0xF7);
-		byte[] rmsib = rm.getBytes();
 		importREX(rm);
-		x64.writeBytes(immBytes,rmsib);
+		rm.writeTo(immBytes);
 	}
 	
 	// imul r,rm, where r:= r * rm
 	public Imul(Reg r, R rm) {
+		this.reg = r;
+		this.rm = rm;
+		this.imm = null;
 		opcodeBytes.write(0x0F);
 		opcodeBytes.write(0xAF);
 		rm.SetRegR(r);
-		byte[] rmsib = rm.getBytes();
 		importREX(rm);
-		x64.writeBytes(immBytes,rmsib);
+		rm.writeTo(immBytes);
 	}
 	
 	// imul r,rm,imm, where r:= rm * imm
 	public Imul(Reg r, R rm, int imm) {
+		this.reg = r;
+		this.rm = rm;
+		this.imm = imm;
 		rm.SetRegR(r);
-		byte[] rmsib = rm.getBytes();
 		importREX(rm);
-		x64.writeBytes(immBytes,rmsib);
+		rm.writeTo(immBytes);
 		
 		if( x64.isOneByte(imm) ) {
 			opcodeBytes.write(0x6B);
@@ -40,4 +50,11 @@ public class Imul extends Instruction {
 			x64.writeInt(immBytes,imm);
 		}
 	}
+	
+	@Override
+	public String toString() {
+		if( reg == null )
+			return "imul " + operand(rm);
+		return "imul " + x64.name(reg) + "," + operand(rm) + ( imm != null ? "," + x64.hex(imm) : "" );
+	}
 }
@@ -1,34 +1,59 @@
 package miniJava.CodeGeneration.x64.ISA;
 
+import miniJava.CodeGeneration.x64.Branch;
 import miniJava.CodeGeneration.x64.Instruction;
+import miniJava.CodeGeneration.x64.Label;
 import miniJava.CodeGeneration.x64.R;
 import miniJava.CodeGeneration.x64.x64;
 
-public class Jmp extends Instruction {
+public class Jmp extends Instruction implements Branch {
+	public final Integer rel; // offset from the next instruction, null for an indirect jmp or a label
+	private final Label _target;
+	public final R rm; // the indirect form, null otherwise
+	
+	// jmp label, the offset is filled in by InstructionList.layout
+	public Jmp(Label target) {
+		this.rel = null;
+		this._target = target;
+		this.rm = null;
+		encode(0, false);
+	}
+	
 	// jmp (some register combination)
 	public Jmp(R modrmsib) {
+		this.rel = null;
+		this._target = null;
+		this.rm = modrmsib;
 		opcodeBytes.write(0xFF);
 		
 		modrmsib.SetRegR(x64.mod543ToReg(4));
-		byte[] rmsib = modrmsib.getBytes();
 		importREX(modrmsib);
-		x64.writeBytes(immBytes,rmsib);
+		modrmsib.writeTo(immBytes);
 	}
 	
 	// jmp imm32 (offset from next instruction)
 	public Jmp(int offset) {
+		this.rel = offset;
+		this._target = null;
+		this.rm = null;
 		opcodeBytes.write(0xE9);
 		x64.writeInt(immBytes,offset);
 	}
 	
 	// jmp imm8 (offset from next instruction)
 	public Jmp(byte offset) {
+		this.rel = (int) offset;
+		this._target = null;
+		this.rm = null;
 		opcodeBytes.write(0xEB);
 		immBytes.write(offset);
 	}
 	
 	// jmp imm8/32 (offset calculated)
 	public Jmp(int curAddr, int destAddr, boolean asByte) {
+		this.rel = destAddr - curAddr - (asByte ? 2 : 5);
+		this._target = null;
+		this.rm = null;
 		if( asByte ) {
 			opcodeBytes.write(0xEB);
 			immBytes.write( destAddr - curAddr - 2 );
@@ -37,4 +62,31 @@ public class Jmp extends Instruction {
 		opcodeBytes.write(0xE9);
 		x64.writeInt(immBytes, destAddr - curAddr - 5);
 	}
+	
+	@Override
+	public Label getTarget() {
+		return _target;
+	}
+	
+	@Override
+	public int encodedSize(boolean asByte) {
+		return asByte ? 2 : 5;
+	}
+	
+	@Override
+	public void encode(int rel, boolean asByte) {
+		reset();
+		if( asByte ) {
+			opcodeBytes.write(0xEB);
+			immBytes.write(rel);
+			return;
+		}
+		opcodeBytes.write(0xE9);
+		x64.writeInt(immBytes, rel);
+	}
+	
+	@Override
+	public String toString() {
+		return "jmp " + ( rm != null ? operand(rm, 8) : target() );
+	}
 }
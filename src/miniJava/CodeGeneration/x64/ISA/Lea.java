@@ -5,10 +5,17 @@ import miniJava.CodeGeneration.x64.R;
 import miniJava.CodeGeneration.x64.x64;
 
 public class Lea extends Instruction {
+	public final R rm;
+	
 	public Lea(R modrmsib) {
+		this.rm = modrmsib;
 		opcodeBytes.write(0x8D);
-		byte[] rmsib = modrmsib.getBytes();
 		importREX(modrmsib);
-		x64.writeBytes(immBytes,rmsib);
+		modrmsib.writeTo(immBytes);
+	}
+	
+	@Override
+	public String toString() {
+		return "lea " + x64.name(rm.getRegR()) + "," + address(rm);
 	}
 }
@@ -5,8 +5,13 @@ import miniJava.CodeGeneration.x64.Reg64;
 import miniJava.CodeGeneration.x64.x64;
 
 public class Mov_ri64 extends Instruction {
+	public final Reg64 reg;
+	public final long imm;
+	
 	// mov r64,imm64 variant
 	public Mov_ri64(Reg64 reg, long imm64) {
+		this.reg = reg;
+		this.imm = imm64;
 		rexW = true; // operand is 64bit
 		// TODO: first, check if the Reg64 is R8-R15, if it is, set one of rexB,rexW,rexR,rexX to true (which one?)
 		// TODO: second, find the opcode for pop r, where r is a plain 64-bit register
@@ -14,7 +19,26 @@ public class Mov_ri64 extends Instruction {
 		if(reg.getIdx() >= 8) {
 			rexB = true;
 		}
-		opcodeBytes.write(0x58 + x64.getIdx(reg));
+		if( imm64 >= 0 && imm64 <= 0xFFFFFFFFL ) {
+			// mov r32, imm32 zero extends into the whole register
+			rexW = false;
+			opcodeBytes.write(0xB8 + x64.getIdx(reg));
+			x64.writeInt(immBytes,(int)imm64);
+			return;
+		}
+		if( x64.isInt(imm64) ) {
+			// mov r64, imm32 sign extended
+			opcodeBytes.write(0xC7);
+			immBytes.write(3 << 6 | x64.getIdx(reg));
+			x64.writeInt(immBytes,(int)imm64);
+			return;
+		}
+		opcodeBytes.write(0xB8 + x64.getIdx(reg));
 		x64.writeLong(immBytes,imm64);
 	}
+	
+	@Override
+	public String toString() {
+		return "mov " + name(reg) + "," + x64.hex(imm);
+	}
 }
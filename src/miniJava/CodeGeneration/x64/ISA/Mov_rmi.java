@@ -2,26 +2,55 @@ package miniJava.CodeGeneration.x64.ISA;
 
 import miniJava.CodeGeneration.x64.Instruction;
 import miniJava.CodeGeneration.x64.R;
+import miniJava.CodeGeneration.x64.Reg;
 import miniJava.CodeGeneration.x64.x64;
 
 public class Mov_rmi extends Instruction {
+	public final R rm;
+	public final int imm;
+	
 	// rm,imm32 variants
 	public Mov_rmi(R modrmsib, int imm) {
+		this.rm = modrmsib;
+		this.imm = imm;
+		
+		if( modrmsib.IsRegRM_R64() && imm >= 0 ) {
+			// mov r32, imm32 zero extends into the whole register and needs no rexW
+			Reg reg = modrmsib.getRegRM();
+			if( reg.getIdx() > 7 )
+				rexB = true;
+			opcodeBytes.write(0xB8 + x64.getIdx(reg));
+			x64.writeInt(immBytes,imm);
+			return;
+		}
+		
 		modrmsib.SetRegR(x64.mod543ToReg(0));
-		byte[] modrmsibBytes = modrmsib.getBytes();
 		importREX(modrmsib);
 		
 		if( x64.isOneByte(imm) && modrmsib.IsRegRM_R8() ) {
 			// mov rm8, imm8
 			opcodeBytes.write(0xC6);
-			x64.writeBytes(immBytes,modrmsibBytes);
+			modrmsib.writeTo(immBytes);
 			immBytes.write(imm);
 			return;
 		}
 		
 		// mov rm64, imm32
 		opcodeBytes.write(0xC7);
-		x64.writeBytes(immBytes,modrmsibBytes);
+		modrmsib.writeTo(immBytes);
 		x64.writeInt(immBytes,imm);
 	}
+	
+	// manually specify rex, a memory operand alone does not make this a 64-bit store
+	//  (a register operand already says how wide it is)
+	public Mov_rmi(R modrmsib, int imm, boolean rexW) {
+		this(modrmsib,imm);
+		if( modrmsib.isMemory() )
+			this.rexW = rexW;
+	}
+	
+	@Override
+	public String toString() {
+		return "mov " + ( rm.isMemory() ? operand(rm) : name(rm.getRegRM()) ) + "," + x64.hex(imm);
+	}
 }
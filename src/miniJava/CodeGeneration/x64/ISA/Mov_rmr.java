@@ -2,14 +2,22 @@ package miniJava.CodeGeneration.x64.ISA;
 
 import miniJava.CodeGeneration.x64.Instruction;
 import miniJava.CodeGeneration.x64.R;
+import miniJava.CodeGeneration.x64.Reg8;
 import miniJava.CodeGeneration.x64.x64;
 
 public class Mov_rmr extends Instruction {
 	// rm,r variants
+	public final R rm;
+	
 	public Mov_rmr(R modrmsib) {
-		byte[] modrmsibBytes = modrmsib.getBytes();
+		this.rm = modrmsib;
 		importREX(modrmsib);
-		opcodeBytes.write(0x89);
-		x64.writeBytes(immBytes,modrmsibBytes);
+		opcodeBytes.write(modrmsib.getRegR() instanceof Reg8 ? 0x88 : 0x89);
+		modrmsib.writeTo(immBytes);
+	}
+	
+	@Override
+	public String toString() {
+		return "mov " + operand(rm) + "," + x64.name(rm.getRegR());
 	}
 }
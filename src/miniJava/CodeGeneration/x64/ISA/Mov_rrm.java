@@ -6,10 +6,17 @@ import miniJava.CodeGeneration.x64.x64;
 
 public class Mov_rrm extends Instruction {
 	// r,rm variants
+	public final R rm;
+	
 	public Mov_rrm(R modrmsib) {
-		byte[] modrmsibBytes = modrmsib.getBytes();
+		this.rm = modrmsib;
 		importREX(modrmsib);
 		opcodeBytes.write(0x8B);
-		x64.writeBytes(immBytes,modrmsibBytes);
+		modrmsib.writeTo(immBytes);
+	}
+	
+	@Override
+	public String toString() {
+		return "mov " + x64.name(rm.getRegR()) + "," + operand(rm);
 	}
 }
@@ -0,0 +1,22 @@
+package miniJava.CodeGeneration.x64.ISA;
+
+import miniJava.CodeGeneration.x64.Instruction;
+import miniJava.CodeGeneration.x64.R;
+import miniJava.CodeGeneration.x64.x64;
+
+public class Movsxd extends Instruction {
+	public final R rm;
+	
+	// movsxd r64,rm32, where r:= the low dword of rm, sign extended
+	public Movsxd(R modrmsib) {
+		this.rm = modrmsib;
+		importREX(modrmsib);
+		opcodeBytes.write(0x63);
+		modrmsib.writeTo(immBytes);
+	}
+	
+	@Override
+	public String toString() {
+		return "movsxd " + x64.name(rm.getRegR()) + "," + operand(rm, 4);
+	}
+}
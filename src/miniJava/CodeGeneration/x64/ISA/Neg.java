@@ -5,11 +5,18 @@ import miniJava.CodeGeneration.x64.R;
 import miniJava.CodeGeneration.x64.x64;
 
 public class Neg extends Instruction {
+	public final R rm;
+	
 	public Neg(R modrmsib) {
+		this.rm = modrmsib;
 		opcodeBytes.write(0xF7);
 		modrmsib.SetRegR(x64.mod543ToReg(3));
-		byte[] rmsib = modrmsib.getBytes();
 		importREX(modrmsib);
-		x64.writeBytes(immBytes,rmsib);
+		modrmsib.writeTo(immBytes);
+	}
+	
+	@Override
+	public String toString() {
+		return "neg " + operand(rm);
 	}
 }
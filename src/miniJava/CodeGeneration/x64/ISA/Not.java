@@ -5,11 +5,18 @@ import miniJava.CodeGeneration.x64.R;
 import miniJava.CodeGeneration.x64.x64;
 
 public class Not extends Instruction {
+	public final R rm;
+	
 	public Not(R modrmsib) {
+		this.rm = modrmsib;
 		opcodeBytes.write(0xF7);
 		modrmsib.SetRegR(x64.mod543ToReg(2));
-		byte[] rmsib = modrmsib.getBytes();
 		importREX(modrmsib);
-		x64.writeBytes(immBytes,rmsib);
+		modrmsib.writeTo(immBytes);
+	}
+	
+	@Override
+	public String toString() {
+		return "not " + operand(rm);
 	}
 }
@@ -1,6 +1,7 @@
 package miniJava.CodeGeneration.x64.ISA;
 
 import miniJava.CodeGeneration.x64.R;
+import miniJava.CodeGeneration.x64.Reg;
 
 public class Or extends SimpleMathInstruction {
 	@Override
@@ -15,4 +16,8 @@ public class Or extends SimpleMathInstruction {
 	public Or(R modrmsib, int imm) {
 		super(modrmsib,imm);
 	}
+	
+	public Or(Reg r, R modrmsib) {
+		super(r,modrmsib);
+	}
 }
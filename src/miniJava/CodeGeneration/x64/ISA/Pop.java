@@ -6,7 +6,13 @@ import miniJava.CodeGeneration.x64.Reg64;
 import miniJava.CodeGeneration.x64.x64;
 
 public class Pop extends Instruction {
+	// one of these is null
+	public final Reg64 reg;
+	public final R rm;
+	
 	public Pop(Reg64 r) {
+		this.reg = r;
+		this.rm = null;
 		// TODO: first, check if the Reg64 is R8-R15, if it is, set one of rexB,rexW,rexR,rexX to true (which one?)
 		// TODO: second, find the opcode for pop r, where r is a plain 64-bit register
 		// NOTE: x64.getIdx(r) will return a 0-7 index, whereas r.getIdx() returns an index from 0-15
@@ -17,10 +23,16 @@ public class Pop extends Instruction {
 	}
 	
 	public Pop(R modrmsib) {
+		this.reg = null;
+		this.rm = modrmsib;
 		opcodeBytes.write(0x8F);
 		modrmsib.SetRegR(x64.mod543ToReg(0));
-		byte[] rmsib = modrmsib.getBytes();
 		importREX(modrmsib);
-		x64.writeBytes(immBytes,rmsib);
+		modrmsib.writeTo(immBytes);
+	}
+	
+	@Override
+	public String toString() {
+		return "pop " + ( reg != null ? x64.name(reg) : operand(rm, 8) );
 	}
 }
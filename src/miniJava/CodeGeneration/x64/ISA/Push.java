@@ -6,12 +6,29 @@ import miniJava.CodeGeneration.x64.Reg64;
 import miniJava.CodeGeneration.x64.x64;
 
 public class Push extends Instruction {
+	// exactly one of these describes the operand
+	public final Reg64 reg;
+	public final R rm;
+	public final Integer imm;
+	
 	public Push(int imm) {
+		this.reg = null;
+		this.rm = null;
+		this.imm = imm;
+		if( x64.isOneByte(imm) ) {
+			// push imm8, sign extended like the imm32 form
+			opcodeBytes.write(0x6A);
+			immBytes.write(imm);
+			return;
+		}
 		opcodeBytes.write(0x68);
 		x64.writeInt(immBytes, imm);
 	}
 	
 	public Push(Reg64 reg) {
+		this.reg = reg;
+		this.rm = null;
+		this.imm = null;
 		// no need to set rexW, push is always r64 (cannot access ecx/r9d)
 		if( reg.getIdx() > 7 )
 			rexB = true;
@@ -19,12 +36,19 @@ public class Push extends Instruction {
 	}
 	
 	public Push(R modrmsib) {
+		this.reg = null;
+		this.rm = modrmsib;
+		this.imm = null;
 		// no need to set rexW, push is always r64 (cannot access ecx/r9d)
 		opcodeBytes.write(0xFF);
 		
 		modrmsib.SetRegR(x64.mod543ToReg(6));
-		byte[] rmsib = modrmsib.getBytes();
 		importREX(modrmsib);
-		x64.writeBytes(immBytes,rmsib);
+		modrmsib.writeTo(immBytes);
+	}
+	
+	@Override
+	public String toString() {
+		return "push " + ( reg != null ? x64.name(reg) : rm != null ? operand(rm, 8) : x64.hex(imm) );
 	}
 }
@@ -4,11 +4,15 @@ import miniJava.CodeGeneration.x64.Instruction;
 import miniJava.CodeGeneration.x64.x64;
 
 public class Ret extends Instruction {
+	public final int imm; // bytes popped after the return address
+	
 	public Ret() {
+		this.imm = 0;
 		opcodeBytes.write( 0xC3 ); // TODO: what is the opcode for return with no size
 	}
 	
 	public Ret(short imm16, short mult) {
+		this.imm = imm16 * mult;
 		opcodeBytes.write( 0xC2 ); // TODO: what is the opcode for return with some size
 		x64.writeShort(immBytes,imm16*mult);
 	}
@@ -16,4 +20,9 @@ public class Ret extends Instruction {
 	public Ret(short imm16) {
 		this(imm16,(short)8);
 	}
+	
+	@Override
+	public String toString() {
+		return imm == 0 ? "ret" : "ret " + x64.hex(imm);
+	}
 }
@@ -3,9 +3,15 @@ package miniJava.CodeGeneration.x64.ISA;
 import miniJava.CodeGeneration.x64.Condition;
 import miniJava.CodeGeneration.x64.Instruction;
 import miniJava.CodeGeneration.x64.Reg8;
+import miniJava.CodeGeneration.x64.x64;
 
 public class SetCond extends Instruction {
+	public final Condition cond;
+	public final Reg8 dest;
+	
 	public SetCond(Condition cond, Reg8 dest) {
+		this.cond = cond;
+		this.dest = dest;
 		opcodeBytes.write(0x0F);
 		switch( cond ) {
 		case E: opcodeBytes.write(0x94); break;
@@ -18,4 +24,9 @@ public class SetCond extends Instruction {
 		
 		immBytes.write(0xC0 + dest.idx);
 	}
+	
+	@Override
+	public String toString() {
+		return "set" + cond.suffix() + " " + x64.name(dest);
+	}
 }
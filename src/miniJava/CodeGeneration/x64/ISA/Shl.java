@@ -0,0 +1,31 @@
+package miniJava.CodeGeneration.x64.ISA;
+
+import miniJava.CodeGeneration.x64.Instruction;
+import miniJava.CodeGeneration.x64.R;
+import miniJava.CodeGeneration.x64.x64;
+
+public class Shl extends Instruction {
+	public final R rm;
+	public final int imm;
+	
+	// shl rm,imm, where rm:= rm << imm
+	public Shl(R rm, int imm) {
+		this.rm = rm;
+		this.imm = imm;
+		rm.SetRegR(x64.mod543ToReg(4));
+		importREX(rm);
+		rm.writeTo(immBytes);
+		
+		if( imm == 1 ) {
+			opcodeBytes.write(0xD1);
+		} else {
+			opcodeBytes.write(0xC1);
+			immBytes.write(imm);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "shl " + operand(rm) + "," + x64.hex(imm);
+	}
+}
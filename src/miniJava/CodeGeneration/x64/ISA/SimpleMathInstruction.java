@@ -4,6 +4,7 @@ import java.util.Map;
 
 import miniJava.CodeGeneration.x64.Instruction;
 import miniJava.CodeGeneration.x64.R;
+import miniJava.CodeGeneration.x64.Reg;
 import miniJava.CodeGeneration.x64.x64;
 
 import java.util.Collections;
@@ -12,27 +13,50 @@ import java.util.HashMap;
 public abstract class SimpleMathInstruction extends Instruction {
 	abstract protected SimpleMathOp _thisOp();
 	
+	public final R rm;
+	public final Integer imm; // null for the register forms
+	public final boolean toReg; // the r,rm form, where r is the destination
+	
 	// rm,r variants
 	public SimpleMathInstruction(R modrmsib) {
-		byte[] modrmsibBytes = modrmsib.getBytes();
+		this.rm = modrmsib;
+		this.imm = null;
+		this.toReg = false;
 		importREX(modrmsib);
 		opcodeBytes.write(_RegRegOpcode.get(_thisOp()));
-		x64.writeBytes(immBytes,modrmsibBytes);
+		modrmsib.writeTo(immBytes);
+	}
+	
+	// r,rm variants, where the memory operand is the source
+	public SimpleMathInstruction(Reg r, R modrmsib) {
+		this.rm = modrmsib;
+		this.imm = null;
+		this.toReg = true;
+		modrmsib.SetRegR(r);
+		importREX(modrmsib);
+		opcodeBytes.write(_RegRegOpcode.get(_thisOp()) + 2);
+		modrmsib.writeTo(immBytes);
 	}
 	
 	// do we have an immediate afterwards?
 	public SimpleMathInstruction(R modrmsib, int imm) {
+		this.rm = modrmsib;
+		this.imm = imm;
+		this.toReg = false;
 		//rexW = true;
 		modrmsib.SetRegR(x64.mod543ToReg(_thisOp().idx));
-		byte[] modrmsibBytes = modrmsib.getBytes();
 		importREX(modrmsib);
 		if( x64.isOneByte(imm) ) {
 			opcodeBytes.write(0x83);
-			x64.writeBytes(immBytes,modrmsibBytes);
+			modrmsib.writeTo(immBytes);
 			immBytes.write(imm);
+		} else if( modrmsib.getRegRM() != null && modrmsib.getRegRM().getIdx() == 0 && !modrmsib.IsRegRM_R8() ) {
+			// op rax/eax,imm32 has its own opcode with no modrm byte
+			opcodeBytes.write(_thisOp().idx * 8 + 5);
+			x64.writeInt(immBytes,imm);
 		} else {
 			opcodeBytes.write(0x81);
-			x64.writeBytes(immBytes,modrmsibBytes);
+			modrmsib.writeTo(immBytes);
 			x64.writeInt(immBytes,imm);
 		}
 	}
@@ -67,4 +91,14 @@ public abstract class SimpleMathInstruction extends Instruction {
 		rrOp.put(SimpleMathOp.CMP,0x01 + (8 * 7));
 		_RegRegOpcode = Collections.unmodifiableMap(rrOp);
 	}
+	
+	@Override
+	public String toString() {
+		String op = _thisOp().name().toLowerCase() + " ";
+		if( imm != null )
+			return op + operand(rm) + "," + x64.hex(imm);
+		if( toReg )
+			return op + x64.name(rm.getRegR()) + "," + operand(rm);
+		return op + operand(rm) + "," + x64.name(rm.getRegR());
+	}
 }
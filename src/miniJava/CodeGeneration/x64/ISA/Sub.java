@@ -1,6 +1,7 @@
 package miniJava.CodeGeneration.x64.ISA;
 
 import miniJava.CodeGeneration.x64.R;
+import miniJava.CodeGeneration.x64.Reg;
 
 public class Sub extends SimpleMathInstruction {
 	@Override
@@ -15,4 +16,8 @@ public class Sub extends SimpleMathInstruction {
 	public Sub(R modrmsib, int imm) {
 		super(modrmsib,imm);
 	}
+	
+	public Sub(Reg r, R modrmsib) {
+		super(r,modrmsib);
+	}
 }
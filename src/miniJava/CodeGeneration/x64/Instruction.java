@@ -1,37 +1,112 @@
 package miniJava.CodeGeneration.x64;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 
 public abstract class Instruction {
-	protected ByteArrayOutputStream opcodeBytes = new ByteArrayOutputStream();
-	protected ByteArrayOutputStream immBytes = new ByteArrayOutputStream();
+	protected CodeBuffer opcodeBytes = new CodeBuffer(2);
+	protected CodeBuffer immBytes = new CodeBuffer(8);
 	protected boolean rexW = false;
 	protected boolean rexR = false;
 	protected boolean rexX = false;
 	protected boolean rexB = false;
 	public int startAddress;
 	public int listIdx;
-	private int _size = -1;
+	private byte[] _bytes; // the finished encoding, rex included
+	private R _ripOperand; // a [rip+disp] operand, its disp is a .bss offset until relocate
+	private int _ripAt = -1; // where that disp sits in _bytes
 	
-	// caching could be done better here, instructions are "kinda" immutable
 	public int size() {
-		if( _size == -1 )
-			_size = getBytes().length;
-		return _size;
+		return bytes().length;
 	}
 	
-	public byte[] getBytes() {
-		ByteArrayOutputStream b = new ByteArrayOutputStream();
-		Byte rex = getRex();
-		if( rex != null )
-			b.write(rex);
-		if( opcodeBytes.size() > 0 )
-			x64.writeBytes(b, opcodeBytes.toByteArray());
-		if( immBytes.size() > 0 )
-			x64.writeBytes(b, immBytes.toByteArray() );
-		byte[] retBytes = b.toByteArray();
-		_size = retBytes.length;
-		return retBytes;
+	// a read-only view of the encoding, only relocate changes it
+	public ByteBuffer getBytes() {
+		return ByteBuffer.wrap(bytes()).asReadOnlyBuffer();
+	}
+	
+	public void writeTo(CodeBuffer code) {
+		byte[] b = bytes();
+		code.write(b, 0, b.length);
+	}
+	
+	// Subclasses write their bytes in the constructor, the first look at the instruction (its
+	//  add to an InstructionList) joins them into one exact array and drops the staging buffers.
+	private byte[] bytes() {
+		if( _bytes == null ) {
+			Byte rex = getRex();
+			int r = rex != null ? 1 : 0;
+			int op = opcodeBytes.size();
+			_bytes = new byte[r + op + immBytes.size()];
+			if( rex != null )
+				_bytes[0] = rex;
+			System.arraycopy(opcodeBytes.array(), 0, _bytes, r, op);
+			System.arraycopy(immBytes.array(), 0, _bytes, r + op, immBytes.size());
+			// the modrm bytes always go first in immBytes, and a rip operand has no SIB
+			if( _ripOperand != null )
+				_ripAt = r + op + 1;
+			opcodeBytes = immBytes = null;
+		}
+		return _bytes;
+	}
+	
+	// dataStart is where .bss begins counted from the start of the code, only once addresses are final
+	public void relocate(int dataStart) {
+		bytes();
+		if( _ripAt < 0 )
+			return;
+		patchInt(_ripAt, dataStart + _ripOperand.getDisp() - (startAddress + _bytes.length));
+	}
+	
+	// the one write to an encoding after it is built
+	private void patchInt(int at, int value) {
+		for( int i = 0; i < 4; ++i )
+			_bytes[at + i] = (byte)(value >> (i * 8));
+	}
+	
+	// the mnemonic and operands for the listing, in objdump -M intel order
+	@Override
+	public String toString() {
+		return getClass().getSimpleName().toLowerCase();
+	}
+	
+	// rm's r/m side, a rip operand shows the disp it is encoded with
+	protected String address(R rm) {
+		bytes();
+		if( rm == _ripOperand && _ripAt >= 0 ) {
+			int disp = readInt(_ripAt);
+			return "[rip" + (disp < 0 ? "" : "+") + x64.hex(disp) + "]";
+		}
+		return rm.toString();
+	}
+	
+	// memory operands carry their width like objdump prints them, taken from the encoding
+	protected String operand(R rm) {
+		return operand(rm, rexW ? 8 : rm.IsRegR_R8() ? 1 : 4);
+	}
+	
+	protected String operand(R rm, int size) {
+		if( !rm.isMemory() )
+			return address(rm);
+		return (size == 8 ? "QWORD" : size == 4 ? "DWORD" : "BYTE") + " PTR " + address(rm);
+	}
+	
+	// without rexW a mov to a 64-bit register writes the dword and zero extends
+	protected String name(Reg r) {
+		if( !rexW && r instanceof Reg64 )
+			r = Reg32.RegFromIdx(x64.getIdx(r), r.getIdx() > 7);
+		return x64.name(r);
+	}
+	
+	// where a direct jmp, jcc or call lands, its rel8 or rel32 ends the encoding
+	protected String target() {
+		byte[] b = bytes();
+		int rel = b.length == 2 ? b[1] : readInt(b.length - 4);
+		return x64.hex(startAddress + b.length + rel);
+	}
+	
+	private int readInt(int at) {
+		byte[] b = bytes();
+		return (b[at] & 0xFF) | (b[at + 1] & 0xFF) << 8 | (b[at + 2] & 0xFF) << 16 | b[at + 3] << 24;
 	}
 	
 	private Byte getRex() {
@@ -40,10 +115,20 @@ public abstract class Instruction {
 		return (byte)((4 << 4) | (rexW ? 1 << 3 : 0) | (rexR ? 1 << 2 : 0) | (rexX ? 1 << 1 : 0) | (rexB ? 1 : 0));
 	}
 	
+	// drops the encoding so a Branch can be encoded again once its offset is known
+	protected void reset() {
+		opcodeBytes = new CodeBuffer(2);
+		immBytes = new CodeBuffer(8);
+		rexW = rexR = rexX = rexB = false;
+		_bytes = null;
+	}
+	
 	protected void importREX(R rm64) {
 		rexW = rexW || rm64.getRexW();
 		rexR = rexR || rm64.getRexR();
 		rexX = rexX || rm64.getRexX();
 		rexB = rexB || rm64.getRexB();
+		if( rm64.isRipRelative() )
+			_ripOperand = rm64;
 	}
 }
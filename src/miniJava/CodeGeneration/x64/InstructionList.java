@@ -1,14 +1,18 @@
 package miniJava.CodeGeneration.x64;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 
 public class InstructionList {
 	private List<Instruction> _instructions = new ArrayList<Instruction>();
+	private List<Label> _labels = new ArrayList<Label>();
 	private int _currentSize = 0;
 	private int _currentIdx = 0;
-	private int _markStart = -1;
+	private List<Label> _noteAt = new ArrayList<Label>();
+	private List<String> _notes = new ArrayList<String>();
+	private CodeBuffer _code; // the whole program end to end, dropped whenever an instruction changes
 	
 	public int getSize() {
 		return _currentSize;
@@ -18,6 +22,7 @@ public class InstructionList {
 		ins.startAddress = _currentSize;
 		ins.listIdx = _currentIdx;
 		_instructions.add(ins);
+		_code = null;
 		_currentIdx++;
 		_currentSize += ins.size();
 		return ins.listIdx;
@@ -27,48 +32,153 @@ public class InstructionList {
 		return _instructions.get(idx);
 	}
 	
-	public void markOutputStart() {
-		_markStart = _currentIdx;
+	// the label goes in front of whatever instruction is added next
+	public void bind(Label label) {
+		if( label.isBound() )
+			throw new IllegalStateException("Label bound twice");
+		label.idx = _currentIdx;
+		_labels.add(label);
 	}
 	
-	public void outputFromMark() {
-		if( _markStart < 0 ) return;
-		
-		for( int i = _markStart; i < _currentIdx; ++i ) {
+	// a line for the listing, it goes in front of whatever instruction is added next. It rides
+	//  on a label so it stays with its instruction through the peephole pass
+	public void note(String text) {
+		Label at = new Label();
+		bind(at);
+		_noteAt.add(at);
+		_notes.add(text);
+	}
+	
+	// only meaningful after layout
+	public int addressOf(Label label) {
+		return label.idx == _currentIdx ? _currentSize : _instructions.get(label.idx).startAddress;
+	}
+	
+	// Final pass over the code: every Branch starts out in its short form, any whose offset
+	//  does not fit is widened and the layout redone until nothing changes (widening only ever
+	//  pushes offsets further apart). Then each branch is encoded against its label once.
+	public void layout() {
+		int n = _instructions.size();
+		boolean[] wide = new boolean[n];
+		int[] addr = new int[n + 1];
+		for( int i = 0; i < n; ++i ) {
 			Instruction ins = _instructions.get(i);
-			byte[] barr = ins.getBytes();
-			//System.out.printf( "%04X %s\t", ins.startAddress, ins.getClass().getSimpleName() );
-			renderBytes(barr);
-			System.out.println();
+			if( ins instanceof Branch ) {
+				Branch b = (Branch) ins;
+				if( b.getTarget() == null ) continue;
+				if( !b.getTarget().isBound() )
+					throw new IllegalStateException("Branch to a label that was never bound");
+				wide[i] = b.encodedSize(true) == b.encodedSize(false);
+			}
+		}
+		
+		boolean changed = true;
+		while( changed ) {
+			int a = 0;
+			for( int i = 0; i < n; ++i ) {
+				addr[i] = a;
+				Instruction ins = _instructions.get(i);
+				a += isLabelBranch(ins) ? ((Branch) ins).encodedSize(!wide[i]) : ins.size();
+			}
+			addr[n] = a;
+			
+			changed = false;
+			for( int i = 0; i < n; ++i ) {
+				Instruction ins = _instructions.get(i);
+				if( wide[i] || !isLabelBranch(ins) ) continue;
+				Branch b = (Branch) ins;
+				if( !x64.isOneByte(addr[b.getTarget().idx] - addr[i] - b.encodedSize(true)) ) {
+					wide[i] = true;
+					changed = true;
+				}
+			}
 		}
 		
-		markOutputStart(); // next invocation will start after the output bytes
+		_code = null;
+		_currentSize = 0;
+		for( int i = 0; i < n; ++i ) {
+			Instruction ins = _instructions.get(i);
+			if( isLabelBranch(ins) ) {
+				Branch b = (Branch) ins;
+				b.encode(addr[b.getTarget().idx] - addr[i] - b.encodedSize(!wide[i]), !wide[i]);
+			}
+			ins.startAddress = _currentSize;
+			_currentSize += ins.size();
+		}
+	}
+	
+	// after layout, points every [rip+disp] operand at its spot in .bss, which starts dataStart
+	//  bytes after the start of the code
+	public void relocate(int dataStart) {
+		for( Instruction ins : _instructions )
+			ins.relocate(dataStart);
+		_code = null;
+	}
+	
+	private static boolean isLabelBranch(Instruction ins) {
+		return ins instanceof Branch && ((Branch) ins).getTarget() != null;
 	}
 	
-	public void patch(int idx, Instruction newIns) {
-		Instruction old = _instructions.get(idx);
-		int newLen = newIns.size();
-		int oldLen = old.size();
-		if( oldLen != newLen ) {
-			// very dangerous, maybe even worth reporting
-			_currentSize += newLen - oldLen;
+	List<Label> labels() {
+		return _labels;
+	}
+	
+	List<Instruction> instructions() {
+		return _instructions;
+	}
+	
+	// swaps in a rewritten list, every address and index is handed out again
+	void replaceAll(List<Instruction> instructions) {
+		_instructions = new ArrayList<Instruction>();
+		_currentSize = 0;
+		_currentIdx = 0;
+		for( Instruction ins : instructions )
+			add(ins);
+	}
+	
+	// each instruction appends its encoding straight into one buffer sized for the whole program
+	private CodeBuffer code() {
+		if( _code == null ) {
+			_code = new CodeBuffer(_currentSize);
+			for( Instruction op : _instructions )
+				op.writeTo(_code);
 		}
-		newIns.startAddress = old.startAddress;
-		newIns.listIdx = idx;
-		_instructions.set(idx, newIns);
+		return _code;
 	}
 	
 	public byte[] getBytes() {
-		ByteArrayOutputStream b = new ByteArrayOutputStream();
-		
-		for( Instruction op : _instructions )
-			x64.writeBytes(b, op.getBytes());
-		
-		return b.toByteArray();
+		CodeBuffer code = code();
+		// the buffer was sized from _currentSize, so this is normally handed out without a copy
+		return code.size() == code.array().length ? code.array() : code.toByteArray();
+	}
+	
+	// After layout: address, bytes and instruction name for every instruction, with the notes
+	//  in front of the instruction they landed on
+	public void writeListing(Writer out) throws IOException {
+		byte[] code = code().array();
+		StringBuilder line = new StringBuilder();
+		int note = 0;
+		for( int i = 0; i <= _instructions.size(); ++i ) {
+			while( note < _notes.size() && _noteAt.get(note).idx <= i )
+				out.write("; " + _notes.get(note++) + "\n");
+			if( i == _instructions.size() )
+				break;
+			
+			Instruction ins = _instructions.get(i);
+			line.setLength(0);
+			hex(line, ins.startAddress, 8);
+			line.append(' ');
+			for( int b = 0; b < ins.size(); ++b )
+				hex(line.append(' '), code[ins.startAddress + b], 2);
+			while( line.length() < 48 )
+				line.append(' ');
+			line.append(ins).append('\n');
+			out.append(line);
+		}
 	}
 	
-	private void renderBytes(byte[] bArray) {
-		for( int i = 0; i < bArray.length; ++i )
-			System.out.printf("%02X ", bArray[i]);
+	private static void hex(StringBuilder sb, int v, int digits) {
+		for( int d = digits - 1; d >= 0; --d )
+			sb.append(Character.toUpperCase(Character.forDigit((v >> (d * 4)) & 0xF, 16)));
 	}
 }
@@ -0,0 +1,11 @@
+package miniJava.CodeGeneration.x64;
+
+// A spot in an InstructionList that jumps and calls can name before it is bound.
+//  Addresses only exist once InstructionList.layout has run.
+public class Label {
+	int idx = -1; // the instruction the label sits in front of
+
+	public boolean isBound() {
+		return idx >= 0;
+	}
+}
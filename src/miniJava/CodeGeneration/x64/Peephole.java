@@ -0,0 +1,400 @@
+package miniJava.CodeGeneration.x64;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import miniJava.CodeGeneration.x64.ISA.*;
+
+// Rewrites a finished InstructionList a couple of neighbouring instructions at a time, before
+//  layout. Deleted instructions stay behind as nulls until the end, so a label keeps its list
+//  index: it lands on the first instruction at or after it. Once nothing matches anymore the
+//  list is compacted and every label moved to its instruction's new index.
+public class Peephole {
+	private static final int SCAN_LIMIT = 32; // instructions looked at before a register is assumed live
+
+	private final Instruction[] _code; // the last slot is an empty sentinel for branches to the end
+	private final int _n;
+	private final int[] _dest; // target index of each label branch, -1 for everything else
+	private final int[] _incoming; // branches and entry points landing on each live index
+	private final int[] _seen;
+	private int _stamp = 0;
+	private int _budget;
+
+	private Peephole(List<Instruction> code) {
+		_n = code.size();
+		_code = code.toArray(new Instruction[_n + 1]);
+		_code[_n] = new Instruction() {};
+		_dest = new int[_n + 1];
+		_incoming = new int[_n + 1];
+		_seen = new int[_n + 1];
+	}
+
+	// Optimizes asm in place, entry is where execution starts
+	public static void optimize(InstructionList asm, Label entry) {
+		Peephole p = new Peephole(asm.instructions());
+		if( !p.findTargets() )
+			return;
+		p._incoming[entry.idx]++;
+		p.run();
+		p.emit(asm);
+	}
+
+	private boolean findTargets() {
+		for( int i = 0; i < _n; ++i ) {
+			_dest[i] = -1;
+			Instruction ins = _code[i];
+			if( ins instanceof Branch && ((Branch) ins).getTarget() != null ) {
+				_dest[i] = ((Branch) ins).getTarget().idx;
+				_incoming[_dest[i]]++;
+			} else if( fixedOffset(ins) ) {
+				return false; // a hand computed offset would break as soon as code moves
+			}
+		}
+		_dest[_n] = -1;
+		return true;
+	}
+
+	private static boolean fixedOffset(Instruction ins) {
+		return ins instanceof Jmp && ((Jmp) ins).rel != null
+				|| ins instanceof CondJmp && ((CondJmp) ins).rel != null
+				|| ins instanceof Call && ((Call) ins).rel != null;
+	}
+
+	private void run() {
+		int i = 0;
+		while( i < _n ) {
+			if( _code[i] == null || !rewrite(i) ) {
+				++i;
+				continue;
+			}
+			i = prev(i); // the rewrite may have lined up a pattern one instruction back
+		}
+	}
+
+	private boolean rewrite(int i) {
+		Instruction a = _code[i];
+		int j = next(i);
+
+		// jmp/jcc to the very next instruction
+		if( (a instanceof Jmp || a instanceof CondJmp) && _dest[i] >= 0 && resolve(_dest[i]) == j ) {
+			remove(i);
+			return true;
+		}
+
+		// nothing falls into the code after an unconditional jump or return
+		if( a instanceof Ret || a instanceof Jmp ) {
+			boolean changed = false;
+			while( j < _n && _incoming[j] == 0 ) {
+				remove(j);
+				j = next(j);
+				changed = true;
+			}
+			if( changed ) return true;
+		}
+
+		Reg64[] move = regMove(a);
+		if( move != null && move[0] == move[1] ) {
+			remove(i);
+			return true;
+		}
+
+		// add/sub 0
+		if( (a instanceof Add || a instanceof Sub) && ((SimpleMathInstruction) a).imm != null
+				&& ((SimpleMathInstruction) a).imm == 0 && flagsDeadAfter(i) ) {
+			remove(i);
+			return true;
+		}
+
+		// the rest look at pairs, and nothing may jump in between the two
+		if( j >= _n || _incoming[j] != 0 ) return false;
+		Instruction b = _code[j];
+
+		if( a instanceof Push && b instanceof Pop && ((Pop) b).reg != null ) {
+			Push push = (Push) a;
+			Reg64 to = ((Pop) b).reg;
+			if( push.reg == to ) {
+				remove(i);
+			} else if( push.reg != null ) {
+				replace(i, new Mov_rmr(new R(to, push.reg)));
+			} else if( push.imm != null ) {
+				replace(i, new Mov_rmi(new R(to, true), push.imm));
+			} else {
+				return false;
+			}
+			remove(j);
+			return true;
+		}
+
+		// mov x,y then mov y,x
+		Reg64[] back = regMove(b);
+		if( move != null && back != null && move[0] == back[1] && move[1] == back[0] ) {
+			remove(j);
+			return true;
+		}
+
+		// a store read straight back
+		if( a instanceof Mov_rmr && b instanceof Mov_rrm && ((Mov_rmr) a).rm.isMemory()
+				&& ((Mov_rrm) b).rm.sameAddress(((Mov_rmr) a).rm) ) {
+			Reg stored = ((Mov_rmr) a).rm.getRegR();
+			Reg loaded = ((Mov_rrm) b).rm.getRegR();
+			if( stored == loaded ) {
+				remove(j);
+			} else if( stored instanceof Reg64 && loaded instanceof Reg64 ) {
+				replace(j, new Mov_rmr(new R((Reg64) loaded, stored)));
+			} else {
+				return false;
+			}
+			return true;
+		}
+
+		// double negation
+		if( ((isXorOne(a) && isXorOne(b)) || (a instanceof Neg && b instanceof Neg))
+				&& sameRegister(a, b) && flagsDeadAfter(j) ) {
+			remove(i);
+			remove(j);
+			return true;
+		}
+
+		// a register loaded only to be used once, fold where it came from into its user
+		Reg64 t = definedTemp(a);
+		if( t != null ) {
+			Instruction folded = fold(a, b, t);
+			if( folded != null && deadAfter(j, t) ) {
+				replace(i, folded);
+				remove(j);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// { dst, src } for a register to register mov
+	private static Reg64[] regMove(Instruction ins) {
+		R rm;
+		if( ins instanceof Mov_rmr ) {
+			rm = ((Mov_rmr) ins).rm;
+			if( rm.getRegRM() instanceof Reg64 && rm.getRegR() instanceof Reg64 )
+				return new Reg64[] { (Reg64) rm.getRegRM(), (Reg64) rm.getRegR() };
+		} else if( ins instanceof Mov_rrm ) {
+			rm = ((Mov_rrm) ins).rm;
+			if( rm.getRegRM() instanceof Reg64 && rm.getRegR() instanceof Reg64 )
+				return new Reg64[] { (Reg64) rm.getRegR(), (Reg64) rm.getRegRM() };
+		}
+		return null;
+	}
+
+	private static boolean isXorOne(Instruction ins) {
+		return ins instanceof Xor && ((Xor) ins).imm != null && ((Xor) ins).imm == 1
+				&& !((Xor) ins).rm.isMemory();
+	}
+
+	private static boolean sameRegister(Instruction a, Instruction b) {
+		R ra = a instanceof Neg ? ((Neg) a).rm : ((SimpleMathInstruction) a).rm;
+		R rb = b instanceof Neg ? ((Neg) b).rm : ((SimpleMathInstruction) b).rm;
+		return !ra.isMemory() && ra.getRegRM() == rb.getRegRM();
+	}
+
+	// the register a plain mov writes
+	private static Reg64 definedTemp(Instruction ins) {
+		if( ins instanceof Mov_rmi && ((Mov_rmi) ins).rm.getRegRM() instanceof Reg64 )
+			return (Reg64) ((Mov_rmi) ins).rm.getRegRM();
+		if( ins instanceof Mov_rrm && ((Mov_rrm) ins).rm.getRegR() instanceof Reg64 )
+			return (Reg64) ((Mov_rrm) ins).rm.getRegR();
+		Reg64[] move = regMove(ins);
+		return move == null ? null : move[0];
+	}
+
+	// b with its single use of t replaced by whatever a put in t, or null if that has no encoding
+	private static Instruction fold(Instruction a, Instruction b, Reg64 t) {
+		Integer imm = null;
+		Reg64 src = null;
+		R mem = null;
+		if( a instanceof Mov_rmi ) {
+			imm = ((Mov_rmi) a).imm;
+		} else if( regMove(a) != null ) {
+			src = regMove(a)[1];
+		} else {
+			mem = ((Mov_rrm) a).rm;
+			if( mem.copyAddress() == null ) return null;
+		}
+
+		if( b instanceof Mov_rmr ) {
+			R rm = ((Mov_rmr) b).rm;
+			if( rm.getRegR() != t || rm.getRegRM() == t || rm.addressMentions(t) ) return null;
+			if( !rm.isMemory() ) {
+				Reg64 to = (Reg64) rm.getRegRM();
+				if( imm != null ) return new Mov_rmi(new R(to, true), imm);
+				if( src != null ) return new Mov_rmr(new R(to, src));
+				return new Mov_rrm(withR(mem.copyAddress(), to));
+			}
+			if( imm != null ) return new Mov_rmi(rm.copyAddress(), imm, true);
+			if( src != null && rm.copyAddress() != null ) return new Mov_rmr(withR(rm.copyAddress(), src));
+			return null;
+		}
+
+		if( b instanceof Push && ((Push) b).reg == t ) {
+			if( imm != null ) return new Push(imm);
+			if( src != null ) return new Push(src);
+			return new Push(mem.copyAddress());
+		}
+
+		if( b instanceof SimpleMathInstruction ) {
+			SimpleMathInstruction op = (SimpleMathInstruction) b;
+			R rm = op.rm;
+			if( op.toReg || rm.isMemory() ) return null;
+			Reg64 dst = (Reg64) rm.getRegRM();
+			if( op.imm == null && rm.getRegR() == t && dst != t ) {
+				// op dst,t
+				if( imm != null ) return math(op, null, new R(dst, true), imm);
+				if( src != null ) return math(op, null, new R(dst, src), null);
+				return math(op, dst, mem.copyAddress(), null);
+			}
+			if( op instanceof Cmp && dst == t && rm.getRegR() != t ) {
+				// cmp t,x leaves t alone, so t can be whatever a read
+				if( imm != null ) return null;
+				if( op.imm != null ) {
+					if( src != null ) return new Cmp(new R(src, true), op.imm, true);
+					return new Cmp(mem.copyAddress(), op.imm, true);
+				}
+				if( src != null ) return new Cmp(new R(src, rm.getRegR()));
+				return new Cmp(withR(mem.copyAddress(), rm.getRegR()));
+			}
+			return null;
+		}
+
+		if( b instanceof Imul && ((Imul) b).reg instanceof Reg64 && ((Imul) b).imm == null ) {
+			Imul mul = (Imul) b;
+			Reg64 dst = (Reg64) mul.reg;
+			if( mul.rm.getRegRM() != t || dst == t ) return null;
+			if( imm != null ) return new Imul(dst, new R(dst, true), imm);
+			if( src != null ) return new Imul(dst, new R(src, true));
+			return new Imul(dst, mem.copyAddress());
+		}
+		return null;
+	}
+
+	private static R withR(R rm, Reg r) {
+		rm.SetRegR(r);
+		return rm;
+	}
+
+	// the same operation as like: op rm,imm when imm is set, op r,rm when r is set, op rm,r otherwise
+	private static Instruction math(SimpleMathInstruction like, Reg r, R rm, Integer imm) {
+		if( like instanceof Add ) return imm != null ? new Add(rm, imm) : r != null ? new Add(r, rm) : new Add(rm);
+		if( like instanceof Sub ) return imm != null ? new Sub(rm, imm) : r != null ? new Sub(r, rm) : new Sub(rm);
+		if( like instanceof And ) return imm != null ? new And(rm, imm) : r != null ? new And(r, rm) : new And(rm);
+		if( like instanceof Or ) return imm != null ? new Or(rm, imm) : r != null ? new Or(r, rm) : new Or(rm);
+		if( like instanceof Xor ) return imm != null ? new Xor(rm, imm) : r != null ? new Xor(r, rm) : new Xor(rm);
+		if( like instanceof Cmp ) return imm != null ? new Cmp(rm, imm, true) : r != null ? new Cmp(r, rm) : new Cmp(rm);
+		return null;
+	}
+
+	// Is reg overwritten before anything reads it, on every path from after i? Branches are
+	//  followed, anything this pass does not understand counts as a read.
+	private boolean deadAfter(int i, Reg64 reg) {
+		++_stamp;
+		_budget = SCAN_LIMIT;
+		return deadFrom(next(i), reg);
+	}
+
+	private boolean deadFrom(int i, Reg64 reg) {
+		while( i < _n ) {
+			if( --_budget < 0 ) return false;
+			if( _seen[i] == _stamp ) return true; // a loop back to code already being checked
+			_seen[i] = _stamp;
+			Instruction ins = _code[i];
+			if( ins instanceof Jmp && _dest[i] >= 0 ) {
+				i = resolve(_dest[i]);
+				continue;
+			}
+			if( ins instanceof CondJmp ) {
+				if( !deadFrom(resolve(_dest[i]), reg) ) return false;
+				i = next(i);
+				continue;
+			}
+			if( reads(ins, reg) ) return false;
+			if( overwrites(ins, reg) ) return true;
+			i = next(i);
+		}
+		return true;
+	}
+
+	private static boolean reads(Instruction ins, Reg64 reg) {
+		if( ins instanceof Mov_rmi ) return ((Mov_rmi) ins).rm.addressMentions(reg);
+		if( ins instanceof Mov_rrm ) return ((Mov_rrm) ins).rm.getRegRM() == reg || ((Mov_rrm) ins).rm.addressMentions(reg);
+		if( ins instanceof Mov_rmr ) return !(((Mov_rmr) ins).rm.getRegR() instanceof Reg64) // a byte store reads part of its register
+				|| ((Mov_rmr) ins).rm.getRegR() == reg || ((Mov_rmr) ins).rm.addressMentions(reg);
+		if( ins instanceof Push ) return ((Push) ins).reg == reg || ((Push) ins).rm != null && ((Push) ins).rm.addressMentions(reg);
+		if( ins instanceof Pop ) return ((Pop) ins).rm != null && ((Pop) ins).rm.addressMentions(reg);
+		if( ins instanceof SimpleMathInstruction ) return ((SimpleMathInstruction) ins).rm.mentions(reg);
+		if( ins instanceof Imul ) return ((Imul) ins).reg == null || ((Imul) ins).rm.mentions(reg);
+		if( ins instanceof Neg ) return ((Neg) ins).rm.mentions(reg);
+		if( ins instanceof Shl ) return ((Shl) ins).rm.mentions(reg);
+		return true;
+	}
+
+	private static boolean overwrites(Instruction ins, Reg64 reg) {
+		if( ins instanceof Mov_rmi ) return ((Mov_rmi) ins).rm.getRegRM() == reg;
+		if( ins instanceof Mov_rrm ) return ((Mov_rrm) ins).rm.getRegR() == reg;
+		if( ins instanceof Mov_rmr ) return ((Mov_rmr) ins).rm.getRegRM() == reg;
+		if( ins instanceof Pop ) return ((Pop) ins).reg == reg;
+		return false;
+	}
+
+	// Does something set the flags again before a jcc or setcc looks at them?
+	private boolean flagsDeadAfter(int i) {
+		int k = next(i);
+		for( int steps = 0; k < _n && steps < SCAN_LIMIT; ++steps, k = next(k) ) {
+			Instruction ins = _code[k];
+			if( ins instanceof SimpleMathInstruction || ins instanceof Neg || ins instanceof Shl ) return true;
+			if( !(ins instanceof Mov_rmi || ins instanceof Mov_rmr || ins instanceof Mov_rrm
+					|| ins instanceof Push || ins instanceof Pop) ) return false;
+		}
+		return false;
+	}
+
+	private int next(int i) {
+		do ++i; while( i < _n && _code[i] == null );
+		return i;
+	}
+
+	private int prev(int i) {
+		do --i; while( i > 0 && _code[i] == null );
+		return Math.max(i, 0);
+	}
+
+	private int resolve(int i) {
+		while( i < _n && _code[i] == null ) ++i;
+		return i;
+	}
+
+	private void replace(int i, Instruction ins) {
+		_code[i] = ins;
+	}
+
+	private void remove(int i) {
+		if( _dest[i] >= 0 )
+			_incoming[resolve(_dest[i])]--;
+		_code[i] = null;
+		_dest[i] = -1;
+		if( _incoming[i] > 0 ) {
+			_incoming[resolve(i)] += _incoming[i];
+			_incoming[i] = 0;
+		}
+	}
+
+	// Drops the deleted slots and moves every label along with its instruction
+	private void emit(InstructionList asm) {
+		List<Instruction> out = new ArrayList<Instruction>();
+		int[] outIdx = new int[_n + 1];
+		for( int i = 0; i < _n; ++i ) {
+			if( _code[i] == null ) continue;
+			outIdx[i] = out.size();
+			out.add(_code[i]);
+		}
+		outIdx[_n] = out.size();
+		for( Label l : asm.labels() )
+			l.idx = outIdx[resolve(l.idx)];
+		asm.replaceAll(out);
+	}
+}
@@ -1,13 +1,13 @@
 package miniJava.CodeGeneration.x64;
 
-import java.io.ByteArrayOutputStream;
-
 public class R {
-	private ByteArrayOutputStream _b;
+	private CodeBuffer _b;
+	private byte[] _bytes; // ModRM/SIB/disp, built once unless an operand is set again
 	private boolean rexW = false;
 	private boolean rexR = false;
 	private boolean rexX = false;
 	private boolean rexB = false;
+	private boolean rip = false;
 	
 	public boolean getRexW() {
 		return rexW;
@@ -25,10 +25,20 @@ public class R {
 		return rexB;
 	}
 	
-	public byte[] getBytes() {
-		_b = new ByteArrayOutputStream();
+	// appends the ModRM/SIB/disp bytes, the operand keeps its own copy
+	public void writeTo(CodeBuffer b) {
+		byte[] bytes = getBytes();
+		b.write(bytes, 0, bytes.length);
+	}
+	
+	private byte[] getBytes() {
+		if( _bytes != null )
+			return _bytes;
+		_b = new CodeBuffer(8);
 		// construct
-		if( rdisp != null && ridx != null && r != null )
+		if( rip && r != null )
+			MakeRip(disp,r);
+		else if( rdisp != null && ridx != null && r != null )
 			Make(rdisp,ridx,mult,disp,r);
 		else if( ridx != null && r != null )
 			Make(ridx,mult,disp,r);
@@ -40,7 +50,9 @@ public class R {
 			Make(disp,r);
 		else throw new IllegalArgumentException("Cannot determine ModRMSIB");
 		
-		return _b.toByteArray();
+		_bytes = _b.toByteArray();
+		_b = null;
+		return _bytes;
 	}
 	
 	private Reg64 rdisp = null, ridx = null;
@@ -79,6 +91,20 @@ public class R {
 		SetDisp(disp);
 	}
 	
+	// [rip+disp],r where disp is an offset into .bss, InstructionList.relocate makes it rip relative
+	public R(int bssOffset, Reg r) {
+		rip = true;
+		SetDisp(bssOffset);
+		SetRegR(r);
+	}
+	
+	// r will be set by some instruction to a mod543
+	// [rip+disp]
+	public R(int bssOffset) {
+		rip = true;
+		SetDisp(bssOffset);
+	}
+	
 	// rm64,r64
 	public R(Reg64 rm, Reg r) {
 		SetRegRM(rm);
@@ -102,32 +128,38 @@ public class R {
 	//}
 	
 	public void SetRegRM(Reg rm) {
+		_bytes = null;
 		if( rm.getIdx() > 7 ) rexB = true;
 		rexW = rexW || rm instanceof Reg64;
 		this.rm = rm;
 	}
 	
 	public void SetRegR(Reg r) {
+		_bytes = null;
 		if( r.getIdx() > 7 ) rexR = true;
 		rexW = rexW || r instanceof Reg64;
 		this.r = r;
 	}
 	
 	public void SetRegDisp(Reg64 rdisp) {
+		_bytes = null;
 		if( rdisp.getIdx() > 7 ) rexB = true;
 		this.rdisp = rdisp;
 	}
 	
 	public void SetRegIdx(Reg64 ridx) {
+		_bytes = null;
 		if( ridx.getIdx() > 7 ) rexX = true;
 		this.ridx = ridx;
 	}
 	
 	public void SetDisp(int disp) {
+		_bytes = null;
 		this.disp = disp;
 	}
 	
 	public void SetMult(int mult) {
+		_bytes = null;
 		this.mult = mult;
 	}
 	
@@ -147,6 +179,67 @@ public class R {
 		return rm instanceof Reg64;
 	}
 	
+	// operand queries for the peephole pass
+	public Reg getRegR() {
+		return r;
+	}
+	
+	// null when this is a memory operand
+	public Reg getRegRM() {
+		return rm;
+	}
+	
+	public boolean isMemory() {
+		return rm == null;
+	}
+	
+	public boolean isRipRelative() {
+		return rip;
+	}
+	
+	public int getDisp() {
+		return disp;
+	}
+	
+	public boolean mentions(Reg reg) {
+		return rm == reg || r == reg || rdisp == reg || ridx == reg;
+	}
+	
+	public boolean addressMentions(Reg reg) {
+		return rdisp == reg || ridx == reg;
+	}
+	
+	public boolean sameAddress(R o) {
+		return rm == null && o.rm == null && rip == o.rip && rdisp == o.rdisp && ridx == o.ridx && mult == o.mult && disp == o.disp;
+	}
+	
+	// a fresh copy of this memory operand with no r set, null if it is not one we can copy
+	public R copyAddress() {
+		if( rip ) return new R(disp);
+		if( rm != null || rdisp == null ) return null;
+		if( ridx != null ) return new R(rdisp,ridx,mult,disp);
+		return new R(rdisp,disp);
+	}
+	
+	// the r/m side, a register name or the address in brackets
+	@Override
+	public String toString() {
+		if( rm != null )
+			return x64.name(rm);
+		StringBuilder sb = new StringBuilder("[");
+		if( rip )
+			sb.append("rip");
+		else if( rdisp != null )
+			sb.append(x64.name(rdisp));
+		if( ridx != null )
+			sb.append(sb.length() > 1 ? "+" : "").append(x64.name(ridx)).append('*').append(mult);
+		if( sb.length() == 1 )
+			sb.append(x64.hex(disp));
+		else if( disp != 0 )
+			sb.append(disp < 0 ? "" : "+").append(x64.hex(disp));
+		return sb.append(']').toString();
+	}
+	
 	// rm,r
 	private void Make(Reg rm, Reg r) {
 		int mod = 3;
@@ -159,12 +252,30 @@ public class R {
 	private void Make(Reg64 rdisp, int disp, Reg r) {
 		// TODO: construct the byte and write to _b
 		// Operands: [rdisp+disp],r
-		int mod = 2;
-		if(rdisp == Reg64.RSP){
-			_b.write(4 << 3 | x64.getIdx(rdisp));
-		}else{
-			_b.write(mod << 6 |x64.getIdx(r) << 3 | x64.getIdx(rdisp));
-		}
+		int mod = dispMod(rdisp, disp);
+		_b.write(mod << 6 | x64.getIdx(r) << 3 | x64.getIdx(rdisp));
+		if( x64.getIdx(rdisp) == 4 )
+			_b.write(4 << 3 | 4); // rm=100 means a SIB follows, this one is just "no index, base rsp/r12"
+		writeDisp(mod, disp);
+	}
+	
+	// mod 0 has no displacement, but with a base of rbp/r13 it means rip relative (or no base
+	//  in a SIB), so those always need at least a disp8
+	private int dispMod(Reg64 base, int disp) {
+		if( disp == 0 && x64.getIdx(base) != 5 ) return 0;
+		return x64.isOneByte(disp) ? 1 : 2;
+	}
+	
+	private void writeDisp(int mod, int disp) {
+		if( mod == 1 )
+			_b.write(disp);
+		else if( mod == 2 )
+			x64.writeInt(_b, disp);
+	}
+	
+	// [rip+disp],r, mod 0 with rm=101 and no SIB
+	private void MakeRip(int disp, Reg r) {
+		_b.write(x64.getIdx(r) << 3 | 5);
 		x64.writeInt(_b, disp);
 	}
 	
@@ -190,7 +301,7 @@ public class R {
 		// TODO: construct the modrm byte and SIB byte
 		// Operands: [rdisp + ridx*mult + disp], r
 		int mod, ss;
-		mod = 2;
+		mod = dispMod(rdisp, disp);
 		_b.write(mod << 6 | x64.getIdx(r) << 3 | 4);
 
 		if (mult == 1) {
@@ -203,27 +314,16 @@ public class R {
 			ss = 3;
 		}
 		_b.write(ss << 6 | x64.getIdx(ridx) << 3 | x64.getIdx(rdisp));
-		x64.writeInt(_b, disp);
+		writeDisp(mod, disp);
 	}
 	// [disp],r
 	private void Make( int disp, Reg r ) {
 		_b.write( ( getIdx(r) << 3 ) | 4 );
 		_b.write( ( 4 << 3 ) | 5 ); // ss doesn't matter
-		writeInt(_b,disp);
+		x64.writeInt(_b,disp);
 	}
 	
 	private int getIdx(Reg r) {
 		return x64.getIdx(r);
 	}
-	
-	// TODO: This is a duplicate declaration from x64.writeInt
-	//  You should remove this, but the reason it is here is so that
-	//  you can immediately see what it does, and so you know what
-	//  is available to you in the x64 class.
-	private void writeInt(ByteArrayOutputStream b, int n) {
-		for( int i = 0; i < 4; ++i ) {
-			b.write( n & 0xFF );
-			n >>= 8;
-		}
-	}
 }
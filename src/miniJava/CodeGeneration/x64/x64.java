@@ -14,12 +14,21 @@ public class x64 {
 		return r.getIdx() > 7 ? r.getIdx() - 8 : r.getIdx();
 	}
 	
+	// register names and immediates the way objdump -M intel prints them
+	public static String name(Reg r) {
+		return r.toString().toLowerCase();
+	}
+	
+	public static String hex(long n) {
+		return n < 0 ? "-0x" + Long.toHexString(-n) : "0x" + Long.toHexString(n);
+	}
+	
 	public static boolean isOneByte(long v) {
-		return v >= Byte.MIN_VALUE && v < Byte.MAX_VALUE; // [-128,127]
+		return v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE; // [-128,127]
 	}
 	
 	public static boolean isOneByte(int v) {
-		return v >= Byte.MIN_VALUE && v < Byte.MAX_VALUE; // [-128,127]
+		return v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE; // [-128,127]
 	}
 	
 	public static boolean isInt(long l) {
@@ -62,6 +71,35 @@ public class x64 {
 			b.write( bArray[i] );
 	}
 	
+	public static void writeShort(CodeBuffer b, int n) {
+		writeShort(b,(short)n);
+	}
+	
+	public static void writeShort(CodeBuffer b, short n) {
+		for( int i = 0; i < 2; ++i ) {
+			b.write( n & 0xFF );
+			n >>= 8;
+		}
+	}
+	
+	public static void writeInt(CodeBuffer b, int n) {
+		for( int i = 0; i < 4; ++i ) {
+			b.write( n & 0xFF );
+			n >>= 8;
+		}
+	}
+	
+	public static void writeLong(CodeBuffer b, long n) {
+		for( int i = 0; i < 8; ++i ) {
+			b.write( (int)(n & 0xFF) );
+			n >>= 8;
+		}
+	}
+	
+	public static void writeLong(CodeBuffer b, int n) {
+		writeLong(b,(long)n);
+	}
+	
 	public static void writeString(ByteArrayOutputStream b, String s) {
 		for( int i = 0; i < s.length(); ++i )
 			b.write( (int)s.charAt(i) );
@@ -3,6 +3,7 @@ package miniJava;
 import miniJava.AbstractSyntaxTrees.ASTDisplay;
 import miniJava.AbstractSyntaxTrees.Package;
 import miniJava.CodeGeneration.CodeGenerator;
+import miniJava.CodeGeneration.ConstantFolding;
 import miniJava.ContextualAnalysis.Identification;
 import miniJava.ContextualAnalysis.ScopedIdentification;
 import miniJava.ContextualAnalysis.TypeChecking;
@@ -19,10 +20,25 @@ public class Compiler {
         // TODO: Instantiate the ErrorReporter object
         ErrorReporter errors = new ErrorReporter();
         // TODO: Check to make sure a file path is given in args
-        if (args.length == 0) return;
+        // -l <file> also writes a listing of the generated code there
+        String source = null, listing = null;
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("-l")) {
+                // a trailing -l has no listing file, it must not be read as the source
+                if (a + 1 == args.length) {
+                    usage();
+                    return;
+                }
+                listing = args[++a];
+            } else if (source == null) source = args[a];
+        }
+        if (source == null) {
+            usage();
+            return;
+        }
         // TODO: Create the inputStream using new FileInputStream
         try {
-            InputStream in = new FileInputStream(args[0]);
+            InputStream in = new FileInputStream(source);
 // TODO: Instantiate the scanner with the input stream and error object
             Scanner scanner = new Scanner(in, errors);
 // TODO: Instantiate the parser with the scanner and error object
@@ -41,14 +57,17 @@ public class Compiler {
             } else {
                 //astDisplay.showTree(p);
                 i.runIdentification(p);
-                tc.runTypeChecking(p);
+                // type checking an unresolved tree only produces follow-on errors
+                if (!errors.hasErrors()) tc.runTypeChecking(p);
                 if (errors.hasErrors()) {
                     // TODO: Check if any errors exist, if so, println("Error")
                     //  then output the errors
                     System.out.println("Error");
                     errors.outputErrors();
                 } else {
+                    new ConstantFolding().runConstantFolding(p);
                     CodeGenerator cg = new CodeGenerator(errors);
+                    if (listing != null) cg.setListing(listing, source);
                     cg.parse(p);
                     if (errors.hasErrors()) errors.outputErrors();
                     //else System.out.println("making a.out");
@@ -60,4 +79,8 @@ public class Compiler {
 
 
     }
+
+    private static void usage() {
+        System.err.println("usage: miniJava.Compiler [-l listing] source.java");
+    }
 }
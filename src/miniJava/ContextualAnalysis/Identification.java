@@ -12,6 +12,9 @@ import java.util.Objects;
 
 public class Identification implements Visitor<Object, Object> {
 
+    // what `a.length` names for every array a, it can be read but never assigned
+    public static final FieldDecl ARRAY_LENGTH = new FieldDecl(false, false, new BaseType(TypeKind.INT, null), "length", null);
+
     ScopedIdentification si;
     ErrorReporter _errors;
     String refNotUsed;
@@ -21,18 +24,19 @@ public class Identification implements Visitor<Object, Object> {
         this._errors = _errors;
     }
 
+    // every problem goes to the ErrorReporter and the walk carries on, so one run reports them all
     public void runIdentification(Package p) {
-        try {
-            p.visit(this, null);
-        } catch (IdentificationError e) {
-            _errors.reportError(e.getLocalizedMessage());
-        }
+        p.visit(this, null);
+    }
+
+    private void declare(Declaration decl) {
+        if (!si.addDeclaration(decl)) _errors.reportError(decl.posn, "Variable already declared");
     }
 
     @Override
     public Object visitPackage(Package prog, Object arg) {
         //opened level 0
-        prog.classDeclList.forEach(si::addDeclaration);
+        prog.classDeclList.forEach(this::declare);
         visitClassDecl((ClassDecl) si.findDeclaration("String"), null);
         visitClassDecl((ClassDecl) si.findDeclaration("_PrintStream"), null);
         visitClassDecl((ClassDecl) si.findDeclaration("System"), null);
@@ -48,9 +52,9 @@ public class Identification implements Visitor<Object, Object> {
             return visitClassDeclHelper(cd, (String) arg);
         }
         si.openScope();
-        cd.fieldDeclList.forEach(si::addDeclaration);
+        cd.fieldDeclList.forEach(this::declare);
         cd.fieldDeclList.forEach(fd -> fd.visit(this, cd));
-        cd.methodDeclList.forEach(si::addDeclaration);
+        cd.methodDeclList.forEach(this::declare);
         cd.methodDeclList.forEach(md -> {
             md.insideClass = cd;
             md.visit(this, cd);
@@ -67,7 +71,7 @@ public class Identification implements Visitor<Object, Object> {
         for (MemberDecl md : cd.methodDeclList)
             if (md.name.equals(arg))
                 return md;
-        throw new IdentificationError("not found");
+        return null;
     }
 
     @Override
@@ -91,14 +95,14 @@ public class Identification implements Visitor<Object, Object> {
     @Override
     public Object visitParameterDecl(ParameterDecl pd, Object arg) {
         pd.type.visit(this, null);
-        si.addDeclaration(pd);
+        declare(pd);
         return null;
     }
 
     @Override
     public Object visitVarDecl(VarDecl decl, Object arg) {
         decl.type.visit(this, null);
-        si.addDeclaration(decl);
+        declare(decl);
         return null;
     }
 
@@ -109,7 +113,9 @@ public class Identification implements Visitor<Object, Object> {
 
     @Override
     public Object visitClassType(ClassType type, Object arg) {
-        if(!(si._table.get(0).get(type.className.spelling) instanceof ClassDecl)) throw new IdentificationError("not class type");
+        Declaration decl = si.findClassDeclaration(type.className.spelling);
+        if(!(decl instanceof ClassDecl)) _errors.reportError(type.posn, "not class type");
+        else type.className.setDecl(decl);
         return null;
     }
 
@@ -123,7 +129,6 @@ public class Identification implements Visitor<Object, Object> {
     public Object visitBlockStmt(BlockStmt stmt, Object arg) {
         si.openScope();
         stmt.sl.forEach(s -> s.visit(this, arg));
-        //if (stmt.sl.size() == 1 && stmt.sl.get(0) instanceof VarDeclStmt) throw new IdentificationError("one line scope");
         si.closeScope();
         return null;
     }
@@ -133,7 +138,7 @@ public class Identification implements Visitor<Object, Object> {
         stmt.varDecl.visit(this, null);
         refNotUsed = stmt.varDecl.name;
         Object ret = stmt.initExp.visit(this, arg);
-        if (ret instanceof ClassDecl) throw new IdentificationError("no classdecl allwoed");
+        if (ret instanceof ClassDecl) _errors.reportError(stmt.posn, "no classdecl allowed");
         refNotUsed = null;
         return null;
     }
@@ -141,9 +146,10 @@ public class Identification implements Visitor<Object, Object> {
     @Override
     public Object visitAssignStmt(AssignStmt stmt, Object arg) {
         stmt.ref.visit(this, arg);
+        if (stmt.ref.decl == ARRAY_LENGTH) _errors.reportError(stmt.ref.posn, "cannot assign to the length of an array");
         Object ret = stmt.val.visit(this, arg);
         if ((ret instanceof MethodDecl || ret instanceof ClassDecl))
-            throw new IdentificationError("cant use method or classdecl");
+            _errors.reportError(stmt.posn, "cant use method or classdecl");
         return null;
     }
 
@@ -172,12 +178,12 @@ public class Identification implements Visitor<Object, Object> {
     public Object visitIfStmt(IfStmt stmt, Object arg) {
         stmt.cond.visit(this, arg);
         stmt.thenStmt.visit(this, arg);
-        if (stmt.thenStmt instanceof VarDeclStmt) throw new IdentificationError("one line scope");
+        if (stmt.thenStmt instanceof VarDeclStmt) _errors.reportError(stmt.thenStmt.posn, "one line scope");
         if (stmt.elseStmt == null) {
             return null;
         }
         stmt.elseStmt.visit(this, arg);
-        if (stmt.elseStmt instanceof VarDeclStmt) throw new IdentificationError("one line scope");
+        if (stmt.elseStmt instanceof VarDeclStmt) _errors.reportError(stmt.elseStmt.posn, "one line scope");
         return null;
     }
 
@@ -185,7 +191,7 @@ public class Identification implements Visitor<Object, Object> {
     public Object visitWhileStmt(WhileStmt stmt, Object arg) {
         stmt.cond.visit(this, arg);
         stmt.body.visit(this, arg);
-        if (stmt.body instanceof VarDeclStmt) throw new IdentificationError("one line scope");
+        if (stmt.body instanceof VarDeclStmt) _errors.reportError(stmt.body.posn, "one line scope");
         return null;
     }
 
@@ -207,7 +213,7 @@ public class Identification implements Visitor<Object, Object> {
     @Override
     public Object visitRefExpr(RefExpr expr, Object arg) {
         Object visit = expr.ref.visit(this, arg);
-        if (expr.ref.decl instanceof MethodDecl) throw new IdentificationError("illegal method usage");
+        if (expr.ref.decl instanceof MethodDecl) _errors.reportError(expr.posn, "illegal method usage");
         return visit;
     }
 
@@ -232,6 +238,7 @@ public class Identification implements Visitor<Object, Object> {
 
     @Override
     public Object visitNewObjectExpr(NewObjectExpr expr, Object arg) {
+        expr.classtype.visit(this, null);
         return null;
     }
 
@@ -245,7 +252,7 @@ public class Identification implements Visitor<Object, Object> {
     @Override
     public Object visitThisRef(ThisRef ref, Object arg) {
         MethodDecl md = (MethodDecl) arg;
-        if (((MethodDecl) arg).isStatic) _errors.reportError("static method using this keyword");
+        if (((MethodDecl) arg).isStatic) _errors.reportError(ref.posn, "static method using this keyword");
         ref.decl = md.insideClass;
         ref.decl.type = new ClassType(new Identifier(new Token(TokenType.CLASS, ((MethodDecl)arg).insideClass.name)), null);
         return null;
@@ -254,7 +261,7 @@ public class Identification implements Visitor<Object, Object> {
     @Override
     public Object visitIdRef(IdRef ref, Object arg) {
         ref.decl = (Declaration) ref.id.visit(this, arg);
-        if (ref.id.spelling.equals(refNotUsed)) throw new IdentificationError("used same id in vardecl");
+        if (ref.id.spelling.equals(refNotUsed)) _errors.reportError(ref.posn, "used same id in vardecl");
         if (ref.decl instanceof ClassDecl && !Objects.equals(ref.decl.name, ref.id.spelling)) return visitClassDecl((ClassDecl) ref.decl, ref.id.spelling);
         return ref.decl;
     }
@@ -263,43 +270,44 @@ public class Identification implements Visitor<Object, Object> {
     public Object visitQRef(QualRef ref, Object arg) {
         ref.ref.visit(this, arg);
         Declaration context = ref.ref.decl;
-        if (context == null) {
-            _errors.reportError("referencing without context");
-            return null;
-        }
+        if (context == null) return null; // the left hand side already reported why
         //System.out.println(ref.ref.decl.getClass());
 
         if (context instanceof ClassDecl) {
             ClassDecl cd = (ClassDecl) context;
             MemberDecl decl = (MemberDecl) cd.visit(this, ref.id.spelling);
             if(ref.ref.decl instanceof MethodDecl) {
-                throw new IdentificationError("Cant have left hand side of qualref as a method");
+                _errors.reportError(ref.posn, "Cant have left hand side of qualref as a method");
+                return null;
             }
             if (decl == null) {
-                _errors.reportError("failed to find declaration of id in class");
+                _errors.reportError(ref.id.posn, "failed to find declaration of id in class");
                 return null;
             }
 
             if (((MethodDecl) arg).isStatic && !decl.isStatic) {
-                _errors.reportError("static reference to non-static variable");
+                _errors.reportError(ref.id.posn, "static reference to non-static variable");
                 return null;
             }
 
             if (decl.isPrivate && !Objects.equals(cd.name, ((MethodDecl) arg).insideClass.name))
-                _errors.reportError("private reference");
+                _errors.reportError(ref.id.posn, "private reference");
             ref.id.decl = decl;
             ref.decl = ref.id.decl;
         } else if (context instanceof LocalDecl || context instanceof MemberDecl) {
             if (Objects.requireNonNull(context.type.typeKind) == TypeKind.CLASS) {
                 ClassType ct = (ClassType) context.type;
-                ClassDecl cd = (ClassDecl) si.findDeclaration(ct.className.spelling);
+                Declaration classDecl = si.findClassDeclaration(ct.className.spelling);
+                if (!(classDecl instanceof ClassDecl)) return null; // visitClassType reported it
+                ClassDecl cd = (ClassDecl) classDecl;
                 //if (((MethodDecl) arg).isStatic) _errors.reportError("static method using this keyword");
                 Declaration d = (Declaration) cd.visit(this, ref.id.spelling);
                 if(ref.ref.decl instanceof MethodDecl) {
-                    throw new IdentificationError("Cant have left hand side of qualref as a method");
+                    _errors.reportError(ref.posn, "Cant have left hand side of qualref as a method");
+                    return null;
                 }
                 if (d == null) {
-                    _errors.reportError("reference not found in class");
+                    _errors.reportError(ref.id.posn, "reference not found in class");
                     return null;
                 }
 
@@ -307,18 +315,20 @@ public class Identification implements Visitor<Object, Object> {
                     MemberDecl md = (MemberDecl) d;
                     //System.out.println(cd.name);
                     if (md.isPrivate && !cd.name.equals(((MethodDecl) arg).insideClass.name))
-                        _errors.reportError("private reference");
+                        _errors.reportError(ref.id.posn, "private reference");
                 }
 
                 ref.id.decl = d;
                 ref.decl = ref.id.decl;
+            } else if (context.type.typeKind == TypeKind.ARRAY && ref.id.spelling.equals("length")) {
+                ref.id.decl = ARRAY_LENGTH;
+                ref.decl = ref.id.decl;
             } else {
-                _errors.reportError("incorrect qualref");
+                _errors.reportError(ref.posn, "incorrect qualref");
             }
         }else {
-            _errors.reportError("incorrect qualref");
+            _errors.reportError(ref.posn, "incorrect qualref");
         }
-        //if (ref.id.decl instanceof MethodDecl) throw new IdentificationError("methoddecl in illegal palce");
         return null;
     }
 
@@ -330,7 +340,9 @@ public class Identification implements Visitor<Object, Object> {
     @Override
     public Object visitIdentifier(Identifier id, Object arg) {
         //if (((MethodDecl) arg).isStatic) _errors.reportError("static method using this keyword");
-        return si.findDeclaration(id.spelling);
+        Declaration decl = si.findDeclaration(id.spelling);
+        if (decl == null) _errors.reportError(id.posn, "Declaration not found: ", id.spelling);
+        return decl;
     }
 
     @Override
@@ -4,16 +4,39 @@ import miniJava.AbstractSyntaxTrees.*;
 import miniJava.SyntacticAnalyzer.Token;
 import miniJava.SyntacticAnalyzer.TokenType;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Stack;
 
 public class ScopedIdentification {
 
+    // One entry per declaration, chained onto whatever it shadows. The head
+    //  of a chain is always the innermost declaration of that name.
+    private static final class Entry {
+        final Declaration decl;
+        final int depth;
+        final Entry shadowed;
+
+        Entry(Declaration decl, int depth, Entry shadowed) {
+            this.decl = decl;
+            this.depth = depth;
+            this.shadowed = shadowed;
+        }
+    }
 
-    Stack<HashMap<String, Declaration>> _table;
+    // level 0 is classes, 1 members, 2 parameters and 3+ locals
+    private final HashMap<String, Entry> _names;
+    // every declaration in the order it was added, closeScope unwinds back to the scope's mark
+    private Declaration[] _log;
+    private int _logSize;
+    private int[] _scopeStarts;
+    private int _depth;
 
     public ScopedIdentification() {
-        _table = new Stack<>();
+        _names = new HashMap<>();
+        _log = new Declaration[64];
+        _logSize = 0;
+        _scopeStarts = new int[16];
+        _depth = -1;
         openScope();
 
         addString();
@@ -22,31 +45,46 @@ public class ScopedIdentification {
     }
 
     public void openScope() {
-        _table.push(new HashMap<>());
+        if (++_depth == _scopeStarts.length) _scopeStarts = Arrays.copyOf(_scopeStarts, _depth * 2);
+        _scopeStarts[_depth] = _logSize;
     }
 
     public void closeScope() {
-        //System.out.println(_table);
-        //if (_table.size() >= 2 && _table.peek().size() == 1) throw new IdentificationError("no dec in own scope");
-        _table.pop();
+        int mark = _scopeStarts[_depth--];
+        while (_logSize > mark) {
+            String name = _log[--_logSize].name;
+            _log[_logSize] = null;
+            Entry outer = _names.get(name).shadowed;
+            if (outer == null) _names.remove(name);
+            else _names.put(name, outer);
+        }
     }
 
-    public void addDeclaration(Declaration decl) {
-        //Iterator<HashMap<String, Declaration>> iter = _table.iterator();
-        if (_table.peek().containsKey(decl.name)) throw new IdentificationError("Variable already declared");
-        for (int i = _table.size() - 1; i >= 2; i--)
-            if (_table.get(i).containsKey(decl.name)) throw new IdentificationError("Variable already declared");
-        _table.peek().put(decl.name, decl);
+    // returns false, leaving the table alone, if decl clashes with an existing declaration
+    public boolean addDeclaration(Declaration decl) {
+        // depths only grow along a chain, so the head alone says whether this is a redeclaration
+        //  in the same scope or a local hiding another local or parameter
+        Entry head = _names.get(decl.name);
+        if (head != null && (head.depth == _depth || head.depth >= 2))
+            return false;
+        _names.put(decl.name, new Entry(decl, _depth, head));
+        if (_logSize == _log.length) _log = Arrays.copyOf(_log, _logSize * 2);
+        _log[_logSize++] = decl;
+        return true;
     }
 
+    // null if name is not declared anywhere in scope
     public Declaration findDeclaration(String name) {
-        //System.out.println(name);
-        for (int i = _table.size() - 1; i >= 0; i--) {
-            if (_table.get(i).containsKey(name)) return _table.get(i).get(name);
-        }
-        throw new IdentificationError("Declaration not found");
+        Entry head = _names.get(name);
+        return head == null ? null : head.decl;
     }
 
+    // the level 0 declaration of name, even if something closer hides it
+    public Declaration findClassDeclaration(String name) {
+        Entry e = _names.get(name);
+        while (e != null && e.depth > 0) e = e.shadowed;
+        return e == null ? null : e.decl;
+    }
 
     private void addSystem() {
         FieldDeclList fdl = new FieldDeclList();
@@ -70,10 +108,3 @@ public class ScopedIdentification {
         addDeclaration(new ClassDecl("String", new FieldDeclList(), new MethodDeclList(), null));
     }
 }
-
-class IdentificationError extends RuntimeException {
-
-    public IdentificationError(String message) {
-        super(message);
-    }
-}
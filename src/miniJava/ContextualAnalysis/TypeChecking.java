@@ -3,6 +3,7 @@ package miniJava.ContextualAnalysis;
 import miniJava.AbstractSyntaxTrees.Package;
 import miniJava.AbstractSyntaxTrees.*;
 import miniJava.ErrorReporter;
+import miniJava.SyntacticAnalyzer.SourcePosition;
 import miniJava.SyntacticAnalyzer.TokenType;
 
 import java.util.Objects;
@@ -84,22 +85,23 @@ public class TypeChecking implements Visitor<Object, Object> {
     @Override
     public Object visitVardeclStmt(VarDeclStmt stmt, Object arg) {
         //System.out.println(stmt.initExp.getClass());
-        checkType((TypeDenoter) stmt.varDecl.visit(this, null),
+        checkType(stmt.initExp.posn, (TypeDenoter) stmt.varDecl.visit(this, null),
                 (TypeDenoter) stmt.initExp.visit(this, arg));
         return null;
     }
 
-    private void checkType(TypeDenoter left, TypeDenoter right) {
+    // posn is where the offending right-hand side starts
+    private void checkType(SourcePosition posn, TypeDenoter left, TypeDenoter right) {
         //System.out.println(a.typeKind);
         //System.out.println(b.typeKind);
         if(left.typeKind.equals(right.typeKind)) {
             if(left instanceof ClassType && right instanceof ClassType) {
                 if (!((ClassType) left).className.spelling.equals(((ClassType) right).className.spelling)) {
-                    reportError("failed");
+                    reportError(posn, "failed");
                 }
             }
         } else {
-            reportError("failed");
+            reportError(posn, "failed");
         }
 
     }
@@ -108,22 +110,22 @@ public class TypeChecking implements Visitor<Object, Object> {
     public Object visitAssignStmt(AssignStmt stmt, Object arg) {
         Object placeholder = stmt.ref.decl.type.getClass();
         if (stmt.ref.decl.type instanceof BaseType || stmt.ref.decl.type instanceof ClassType || stmt.ref.decl.type instanceof ArrayType) {
-            checkType((TypeDenoter) stmt.ref.visit(this, null),
+            checkType(stmt.val.posn, (TypeDenoter) stmt.ref.visit(this, null),
                     (TypeDenoter) stmt.val.visit(this, null));
             return null;
         }
-        reportError("wrong type during assignment");
+        reportError(stmt.posn, "wrong type during assignment");
         return null;
     }
 
     @Override
     public Object visitIxAssignStmt(IxAssignStmt stmt, Object arg) {
         if (!(stmt.ref.decl.type instanceof ArrayType)) {
-            reportError("array type expected");
+            reportError(stmt.ref.posn, "array type expected");
             return null;
         }
-        if (!((TypeDenoter) stmt.ix.visit(this, null)).typeKind.equals(TypeKind.INT)) reportError("expected int");
-        checkType(((ArrayType) stmt.ref.decl.type).eltType, (TypeDenoter) stmt.exp.visit(this, null));
+        if (!((TypeDenoter) stmt.ix.visit(this, null)).typeKind.equals(TypeKind.INT)) reportError(stmt.ix.posn, "expected int");
+        checkType(stmt.exp.posn, ((ArrayType) stmt.ref.decl.type).eltType, (TypeDenoter) stmt.exp.visit(this, null));
         return null;
     }
 
@@ -131,12 +133,12 @@ public class TypeChecking implements Visitor<Object, Object> {
     public Object visitCallStmt(CallStmt stmt, Object arg) {
         if ((stmt.methodRef.decl instanceof MethodDecl)) {
             MethodDecl md = (MethodDecl) stmt.methodRef.decl;
-            if (md.parameterDeclList.size() != stmt.argList.size()) reportError("incorrect argument size");
+            if (md.parameterDeclList.size() != stmt.argList.size()) reportError(stmt.posn, "incorrect argument size");
             for (int i = 0; i < md.parameterDeclList.size(); i++) {
-                checkType((TypeDenoter) md.parameterDeclList.get(i).visit(this, null), (TypeDenoter) stmt.argList.get(i).visit(this, null));
+                checkType(stmt.argList.get(i).posn, (TypeDenoter) md.parameterDeclList.get(i).visit(this, null), (TypeDenoter) stmt.argList.get(i).visit(this, null));
             }
         } else {
-            reportError("should be method decl");
+            reportError(stmt.methodRef.posn, "should be method decl");
         }
         return null;
     }
@@ -145,17 +147,17 @@ public class TypeChecking implements Visitor<Object, Object> {
     public Object visitReturnStmt(ReturnStmt stmt, Object arg) {
         MethodDecl md = (MethodDecl) arg;
         if (stmt.returnExpr == null && !md.type.typeKind.equals(TypeKind.VOID)) {
-            reportError("need return stmt");
+            reportError(stmt.posn, "need return stmt");
         }
         TypeDenoter rTD = (TypeDenoter) Objects.requireNonNull(stmt.returnExpr).visit(this, null);
-        checkType(md.type, rTD);
+        checkType(stmt.returnExpr.posn, md.type, rTD);
         return null;
     }
 
     @Override
     public Object visitIfStmt(IfStmt stmt, Object arg) {
         if (!((TypeDenoter) stmt.cond.visit(this, null)).typeKind.equals(TypeKind.BOOLEAN))
-            reportError("condition not bolean");
+            reportError(stmt.cond.posn, "condition not bolean");
         stmt.thenStmt.visit(this, arg);
         if (stmt.elseStmt != null)
             stmt.elseStmt.visit(this, arg);
@@ -165,7 +167,7 @@ public class TypeChecking implements Visitor<Object, Object> {
     @Override
     public Object visitWhileStmt(WhileStmt stmt, Object arg) {
         if (!((TypeDenoter) stmt.cond.visit(this, null)).typeKind.equals(TypeKind.BOOLEAN))
-            reportError("while cond should be boolean");
+            reportError(stmt.cond.posn, "while cond should be boolean");
         stmt.body.visit(this, arg);
         return null;
     }
@@ -173,15 +175,15 @@ public class TypeChecking implements Visitor<Object, Object> {
     @Override
     public Object visitUnaryExpr(UnaryExpr expr, Object arg) {
         TypeDenoter exp = (TypeDenoter) expr.expr.visit(this, null);
-        switch (expr.operator.spelling) {
-            case "!":
-                if (!exp.typeKind.equals(TypeKind.BOOLEAN)) _errors.reportError("should be boolean expression");
+        switch (expr.operator.op) {
+            case NOT:
+                if (!exp.typeKind.equals(TypeKind.BOOLEAN)) _errors.reportError(expr.expr.posn, "should be boolean expression");
                 return new BaseType(TypeKind.BOOLEAN, null);
-            case "-":
-                if (!exp.typeKind.equals(TypeKind.INT)) _errors.reportError("should be int expression");
+            case MINUS:
+                if (!exp.typeKind.equals(TypeKind.INT)) _errors.reportError(expr.expr.posn, "should be int expression");
                 return new BaseType(TypeKind.INT, null);
             default:
-                reportError("non unary operator");
+                reportError(expr.posn, "non unary operator");
                 return new BaseType(TypeKind.ERROR, null);
         }
     }
@@ -192,36 +194,36 @@ public class TypeChecking implements Visitor<Object, Object> {
         TypeDenoter left = (TypeDenoter) expr.left.visit(this, arg);
         TypeDenoter right = (TypeDenoter) expr.right.visit(this, arg);
 
-        switch (expr.operator.spelling) {
-            case ">":
-            case "<":
-            case ">=":
-            case "<=":
-            case "!=":
-                if (!left.typeKind.equals(TypeKind.INT)) _errors.reportError("should be int expression");
-                if (!right.typeKind.equals(TypeKind.INT)) _errors.reportError("should be int expression");
+        switch (expr.operator.op) {
+            case GT:
+            case LT:
+            case GTE:
+            case LTE:
+            case NOTEQ:
+                if (!left.typeKind.equals(TypeKind.INT)) _errors.reportError(expr.left.posn, "should be int expression");
+                if (!right.typeKind.equals(TypeKind.INT)) _errors.reportError(expr.right.posn, "should be int expression");
                 return new BaseType(TypeKind.BOOLEAN, null);
 
-            case "==":
-                checkType(left, right);
+            case EQEQ:
+                checkType(expr.right.posn, left, right);
                 return new BaseType(TypeKind.BOOLEAN, null);
 
-            case "&&":
-            case "||":
-                if (!left.typeKind.equals(TypeKind.BOOLEAN)) _errors.reportError("should be boolean expression");
-                if (!right.typeKind.equals(TypeKind.BOOLEAN)) _errors.reportError("should be boolean expression");
+            case ANDAND:
+            case OROR:
+                if (!left.typeKind.equals(TypeKind.BOOLEAN)) _errors.reportError(expr.left.posn, "should be boolean expression");
+                if (!right.typeKind.equals(TypeKind.BOOLEAN)) _errors.reportError(expr.right.posn, "should be boolean expression");
                 return new BaseType(TypeKind.BOOLEAN, null);
 
-            case "+":
-            case "-":
-            case "*":
-            case "/":
-                if (!left.typeKind.equals(TypeKind.INT)) _errors.reportError("should be int expression");
-                if (!right.typeKind.equals(TypeKind.INT)) _errors.reportError("should be int expression");
+            case PLUS:
+            case MINUS:
+            case TIMES:
+            case DIVIDE:
+                if (!left.typeKind.equals(TypeKind.INT)) _errors.reportError(expr.left.posn, "should be int expression");
+                if (!right.typeKind.equals(TypeKind.INT)) _errors.reportError(expr.right.posn, "should be int expression");
                 return new BaseType(TypeKind.INT, null);
 
             default:
-                _errors.reportError("invalid operator combination");
+                _errors.reportError(expr.posn, "invalid operator combination");
                 return new BaseType(TypeKind.ERROR, null);
         }
     }
@@ -236,11 +238,11 @@ public class TypeChecking implements Visitor<Object, Object> {
         if (expr.ref.visit(this, null) instanceof ArrayType) {
             ArrayType at = (ArrayType) expr.ref.visit(this, null);
             if (!((TypeDenoter) expr.ixExpr.visit(this, null)).typeKind.equals(TypeKind.INT))
-                _errors.reportError("expected int when accessing array");
+                _errors.reportError(expr.ixExpr.posn, "expected int when accessing array");
 
             return at.eltType;
         }
-        _errors.reportError("should be array type");
+        _errors.reportError(expr.ref.posn, "should be array type");
         return new BaseType(TypeKind.ERROR, null);
 
     }
@@ -249,12 +251,12 @@ public class TypeChecking implements Visitor<Object, Object> {
     public Object visitCallExpr(CallExpr expr, Object arg) {
         if (expr.functionRef.decl instanceof MethodDecl) {
             MethodDecl md = (MethodDecl) expr.functionRef.decl;
-            if (md.parameterDeclList.size() != expr.argList.size()) reportError("incorrect argument size");
+            if (md.parameterDeclList.size() != expr.argList.size()) reportError(expr.posn, "incorrect argument size");
             for (int i = 0; i < md.parameterDeclList.size(); i++)
-                checkType((TypeDenoter) md.parameterDeclList.get(i).visit(this, null), (TypeDenoter) expr.argList.get(i).visit(this, null));
+                checkType(expr.argList.get(i).posn, (TypeDenoter) md.parameterDeclList.get(i).visit(this, null), (TypeDenoter) expr.argList.get(i).visit(this, null));
             return md.type;
         }
-        _errors.reportError("should be method call");
+        _errors.reportError(expr.functionRef.posn, "should be method call");
         return new BaseType(TypeKind.ERROR, null);
     }
 
@@ -273,7 +275,7 @@ public class TypeChecking implements Visitor<Object, Object> {
 
     @Override
     public Object visitNewArrayExpr(NewArrayExpr expr, Object arg) {
-        checkType(new BaseType(TypeKind.INT, null), (TypeDenoter) expr.sizeExpr.visit(this, null));
+        checkType(expr.sizeExpr.posn, new BaseType(TypeKind.INT, null), (TypeDenoter) expr.sizeExpr.visit(this, null));
         return new ArrayType(expr.eltType, null);
     }
 
@@ -285,7 +287,7 @@ public class TypeChecking implements Visitor<Object, Object> {
     @Override
     public Object visitIdRef(IdRef ref, Object arg) {
         if (arg instanceof MethodDecl && ((MethodDecl) arg).isStatic && ref.decl instanceof MemberDecl && !((MemberDecl) ref.decl).isStatic) {
-            reportError("static var used in non static context");
+            reportError(ref.posn, "static var used in non static context");
         }
         return ref.decl.type;
     }
@@ -320,8 +322,8 @@ public class TypeChecking implements Visitor<Object, Object> {
         return new BaseType(TypeKind.BOOLEAN, null);
     }
 
-    public void reportError(String message) {
-        _errors.reportError(message);
+    public void reportError(SourcePosition posn, String message) {
+        _errors.reportError(posn, message);
         throw new TypeCheckingError(message);
     }
 
@@ -332,4 +334,10 @@ class TypeCheckingError extends RuntimeException {
         super(message);
 
     }
+
+    // only used to unwind the checker, a stack trace would never be looked at
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package miniJava;
 
+import miniJava.SyntacticAnalyzer.SourcePosition;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,4 +34,16 @@ public class ErrorReporter {
 
         _errorQueue.add(sb.toString());
     }
+
+    // same as above, prefixed with "line:col" when the position is known
+    public void reportError(SourcePosition posn, String... error) {
+        StringBuilder sb = new StringBuilder();
+        if (posn != null)
+            sb.append(posn).append(": ");
+
+        for (String s : error)
+            sb.append(s);
+
+        _errorQueue.add(sb.toString());
+    }
 }
@@ -0,0 +1,25 @@
+package miniJava.SyntacticAnalyzer;
+
+// The operators miniJava knows about. MINUS is both binary and unary, NOT is only unary.
+public enum OperatorType {
+    OROR("||"),
+    ANDAND("&&"),
+    EQEQ("=="),
+    NOTEQ("!="),
+    LT("<"),
+    LTE("<="),
+    GT(">"),
+    GTE(">="),
+    PLUS("+"),
+    MINUS("-"),
+    TIMES("*"),
+    DIVIDE("/"),
+    NOT("!"),
+    SHL("<<"); // only made by constant folding, the scanner never produces it
+
+    public final String spelling;
+
+    OperatorType(String spelling) {
+        this.spelling = spelling;
+    }
+}
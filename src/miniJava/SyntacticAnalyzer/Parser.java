@@ -4,28 +4,50 @@ import miniJava.AbstractSyntaxTrees.Package;
 import miniJava.AbstractSyntaxTrees.*;
 import miniJava.ErrorReporter;
 
-import java.util.Arrays;
-import java.util.List;
 import java.util.Objects;
-import java.util.function.Supplier;
 
 public class Parser {
-    private static final String[][] BINOPS = {{"||"}, {"&&"}, {"==", "!="}, {"<=", "<", ">", ">="}, {"+", "-"}, {"*", "/"}, {"-", "!"}};
+    // binary precedence by OperatorType ordinal, higher binds tighter, 0 means not a binary operator
+    private static final int[] PRECEDENCE = new int[OperatorType.values().length];
+    // ring buffer of scanned tokens, size must be a power of two
+    private static final int LOOKAHEAD = 16;
     private final Scanner _scanner;
     private final ErrorReporter _errors;
+    private final Token[] _lookahead = new Token[LOOKAHEAD];
+    private int _head = 0; // slot of _currentToken
+    private int _buffered = 0; // tokens in the ring, starting at _head
     private Token _currentToken;
+    private int _taken = 0; // tokens consumed so far, used to tell whether recovery made progress
+    private boolean _panic = false; // an error was reported and no token has been accepted since
+    private int _minusTaken = -1; // _taken just after the last unary minus, 2147483648 may only follow it
+
+    static {
+        PRECEDENCE[OperatorType.OROR.ordinal()] = 1;
+        PRECEDENCE[OperatorType.ANDAND.ordinal()] = 2;
+        PRECEDENCE[OperatorType.EQEQ.ordinal()] = 3;
+        PRECEDENCE[OperatorType.NOTEQ.ordinal()] = 3;
+        PRECEDENCE[OperatorType.LT.ordinal()] = 4;
+        PRECEDENCE[OperatorType.LTE.ordinal()] = 4;
+        PRECEDENCE[OperatorType.GT.ordinal()] = 4;
+        PRECEDENCE[OperatorType.GTE.ordinal()] = 4;
+        PRECEDENCE[OperatorType.PLUS.ordinal()] = 5;
+        PRECEDENCE[OperatorType.MINUS.ordinal()] = 5;
+        PRECEDENCE[OperatorType.TIMES.ordinal()] = 6;
+        PRECEDENCE[OperatorType.DIVIDE.ordinal()] = 6;
+    }
 
     public Parser(Scanner scanner, ErrorReporter errors) {
         this._scanner = scanner;
         this._errors = errors;
-        this._currentToken = this._scanner.scan();
+        this._currentToken = peek(0);
     }
 
     public Package parse() {
         try {
             // The first thing we need to parse is the Program symbol
-            if (_currentToken == null) throw new SyntaxError();
-            return new Package(parseProgram(), null);
+            if (_currentToken.getTokenType() == TokenType.ERROR) _panic = true; // already reported by the scanner
+            SourcePosition posn = _currentToken.getTokenPosition();
+            return new Package(parseProgram(), posn);
         } catch (SyntaxError e) {
             return null;
         }
@@ -35,8 +57,14 @@ public class Parser {
     private ClassDeclList parseProgram() throws SyntaxError {
         // TODO: Keep parsing class declarations until eot
         ClassDeclList cdl = new ClassDeclList();
-        while (_currentToken.getTokenType() == TokenType.CLASS) {
-            cdl.add(parseClassDeclaration());
+        while (_currentToken.getTokenType() != TokenType.EOT) {
+            try {
+                if (_currentToken.getTokenType() != TokenType.CLASS)
+                    throw error(_currentToken.getTokenPosition(), "Expected class declaration");
+                cdl.add(parseClassDeclaration());
+            } catch (SyntaxError e) {
+                syncClass();
+            }
         }
         accept(TokenType.EOT);
         return cdl;
@@ -46,6 +74,7 @@ public class Parser {
     private ClassDecl parseClassDeclaration() throws SyntaxError {
         // TODO: Take in a "class" token (check by the TokenType)
         //  What should be done if the first token isn't "class"?
+        SourcePosition classPosn = _currentToken.getTokenPosition();
         accept(TokenType.CLASS);
         // TODO: Take in an identifier token
         String cn = _currentToken.getTokenText();
@@ -55,42 +84,51 @@ public class Parser {
         // TODO: Parse either a FieldDeclaration or MethodDeclaration
         MethodDeclList mdl = new MethodDeclList();
         FieldDeclList fdl = new FieldDeclList();
-        while (_currentToken.getTokenType() != TokenType.RCURLY) {
-            boolean isPrivate = Objects.equals(_currentToken.getTokenText(), "private");
-            if (_currentToken.getTokenType() == TokenType.VISIBILITY) accept(TokenType.VISIBILITY);
-            boolean isStatic = false;
-            if (_currentToken.getTokenType() == TokenType.ACCESS) {
-                accept(TokenType.ACCESS);
-                isStatic = true;
-            }
-            TypeDenoter t;
-            if (_currentToken.getTokenType() == TokenType.VOID) {
-                t = new BaseType(TypeKind.VOID, null);
-                accept(TokenType.VOID);
-                String name = _currentToken.getTokenText();
-                accept(TokenType.ID);
-                mdl.add(parseMethodDeclaration(new FieldDecl(isPrivate, isStatic, t, name, null)));
-            } else {
-                t = parseType();
-                String name = _currentToken.getTokenText();
-                accept(TokenType.ID);
-                switch (_currentToken.getTokenType()) {
-                    case SEMICOLON:
-                        fdl.add(parseFieldDeclaration(new FieldDecl(isPrivate, isStatic, t, name, null)));
-                        break;
-                    case LPAREN:
-                        mdl.add(parseMethodDeclaration(new FieldDecl(isPrivate, isStatic, t, name, null)));
-                        break;
-                    default:
-                        _errors.reportError("Not a field or method declaration");
-                        throw new SyntaxError();
-                }
-
+        while (!atBlockEnd()) {
+            int taken = _taken;
+            try {
+                parseMemberDeclaration(fdl, mdl);
+            } catch (SyntaxError e) {
+                syncMember(taken);
             }
         }
         // TODO: Take in a }
         accept(TokenType.RCURLY);
-        return new ClassDecl(cn, fdl, mdl, null);
+        return new ClassDecl(cn, fdl, mdl, classPosn);
+    }
+
+    private void parseMemberDeclaration(FieldDeclList fdl, MethodDeclList mdl) throws SyntaxError {
+        SourcePosition memberPosn = _currentToken.getTokenPosition();
+        boolean isPrivate = Objects.equals(_currentToken.getTokenText(), "private");
+        if (_currentToken.getTokenType() == TokenType.VISIBILITY) accept(TokenType.VISIBILITY);
+        boolean isStatic = false;
+        if (_currentToken.getTokenType() == TokenType.ACCESS) {
+            accept(TokenType.ACCESS);
+            isStatic = true;
+        }
+        TypeDenoter t;
+        if (_currentToken.getTokenType() == TokenType.VOID) {
+            t = new BaseType(TypeKind.VOID, _currentToken.getTokenPosition());
+            accept(TokenType.VOID);
+            String name = _currentToken.getTokenText();
+            accept(TokenType.ID);
+            mdl.add(parseMethodDeclaration(new FieldDecl(isPrivate, isStatic, t, name, memberPosn)));
+        } else {
+            t = parseType();
+            String name = _currentToken.getTokenText();
+            accept(TokenType.ID);
+            switch (_currentToken.getTokenType()) {
+                case SEMICOLON:
+                    fdl.add(parseFieldDeclaration(new FieldDecl(isPrivate, isStatic, t, name, memberPosn)));
+                    break;
+                case LPAREN:
+                    mdl.add(parseMethodDeclaration(new FieldDecl(isPrivate, isStatic, t, name, memberPosn)));
+                    break;
+                default:
+                    throw error(_currentToken.getTokenPosition(), "Not a field or method declaration");
+            }
+
+        }
     }
 
     private FieldDecl parseFieldDeclaration(MemberDecl md) throws SyntaxError {
@@ -103,60 +141,55 @@ public class Parser {
         ParameterDeclList pdl = new ParameterDeclList();
         while (_currentToken.getTokenType() != TokenType.RPAREN) {
             TypeDenoter t = parseType();
-            pdl.add(new ParameterDecl(t, _currentToken.getTokenText(), null));
+            pdl.add(new ParameterDecl(t, _currentToken.getTokenText(), t.posn));
             accept(TokenType.ID);
             while (_currentToken.getTokenType() == TokenType.COMMA) {
                 accept(TokenType.COMMA);
                 t = parseType();
-                pdl.add(new ParameterDecl(t, _currentToken.getTokenText(), null));
+                pdl.add(new ParameterDecl(t, _currentToken.getTokenText(), t.posn));
                 accept(TokenType.ID);
             }
         }
         accept(TokenType.RPAREN);
         accept(TokenType.LCURLY);
-        StatementList sl = new StatementList();
-        while (_currentToken.getTokenType() != TokenType.RCURLY) {
-            sl.add(parseStatement());
-        }
+        StatementList sl = parseStatementList();
         accept(TokenType.RCURLY);
         return new MethodDecl(md, pdl, sl, md.posn);
     }
 
     private TypeDenoter parseType() throws SyntaxError {
+        SourcePosition posn = _currentToken.getTokenPosition();
         switch (_currentToken.getTokenType()) {
             case ID:
             case INT:
                 Token token = _currentToken;
                 accept(_currentToken.getTokenType());
                 TypeDenoter td;
-                if (token.getTokenType() == TokenType.INT) td = new BaseType(TypeKind.INT, null);
-                else if (token.getTokenText().equals("String")) td = new BaseType(TypeKind.UNSUPPORTED, null);
-                else td = new ClassType(new Identifier(token), null);
+                if (token.getTokenType() == TokenType.INT) td = new BaseType(TypeKind.INT, posn);
+                else if (token.getTokenText().equals("String")) td = new BaseType(TypeKind.UNSUPPORTED, posn);
+                else td = new ClassType(new Identifier(token), posn);
                 if (_currentToken.getTokenType() == TokenType.LBRACKET) {
                     accept(TokenType.LBRACKET);
                     accept(TokenType.RBRACKET);
-                    return new ArrayType(td, null);
+                    return new ArrayType(td, posn);
                 }
                 return td;
             case BOOLEAN:
                 accept(TokenType.BOOLEAN);
-                return new BaseType(TypeKind.BOOLEAN, null);
+                return new BaseType(TypeKind.BOOLEAN, posn);
             default:
-                _errors.reportError("Invalid Type " + _currentToken.getTokenType());
-                throw new SyntaxError();
+                throw error(posn, "Invalid Type " + _currentToken.getTokenType());
         }
     }
 
     private Statement parseStatement() throws SyntaxError {
+        SourcePosition posn = _currentToken.getTokenPosition();
         switch (_currentToken.getTokenType()) {
             case LCURLY:
                 accept(TokenType.LCURLY);
-                StatementList sl = new StatementList();
-                while (_currentToken.getTokenType() != TokenType.RCURLY) {
-                    sl.add(parseStatement());
-                }
+                StatementList sl = parseStatementList();
                 accept(TokenType.RCURLY);
-                return new BlockStmt(sl, null);
+                return new BlockStmt(sl, posn);
             case RETURN:
                 accept(TokenType.RETURN);
                 Expression return_e = null;
@@ -164,7 +197,7 @@ public class Parser {
                     return_e = parseExpression();
                 }
                 accept(TokenType.SEMICOLON);
-                return new ReturnStmt(return_e, null);
+                return new ReturnStmt(return_e, posn);
             case IF:
                 accept(TokenType.IF);
                 accept(TokenType.LPAREN);
@@ -174,84 +207,79 @@ public class Parser {
                 if (_currentToken.getTokenType() == TokenType.ELSE) {
                     accept(TokenType.ELSE);
                     Statement el = parseStatement();
-                    return new IfStmt(if_b, if_s, el, null);
+                    return new IfStmt(if_b, if_s, el, posn);
                 }
-                return new IfStmt(if_b, if_s, null);
+                return new IfStmt(if_b, if_s, posn);
             case WHILE:
                 accept(TokenType.WHILE);
                 accept(TokenType.LPAREN);
                 Expression while_e = parseExpression();
                 accept(TokenType.RPAREN);
                 Statement while_s = parseStatement();
-                return new WhileStmt(while_e, while_s, null);
+                return new WhileStmt(while_e, while_s, posn);
             case THIS:
-                Reference thisref = new ThisRef(null);
+                Reference thisref = new ThisRef(posn);
                 accept(TokenType.THIS);
                 while (_currentToken.getTokenType() == TokenType.PERIOD) {
                     accept(TokenType.PERIOD);
-                    thisref = new QualRef(thisref, new Identifier(_currentToken), null);
+                    thisref = new QualRef(thisref, new Identifier(_currentToken), posn);
                     accept(TokenType.ID);
                 }
-                return parseStatementReference(thisref);
-            case INT:
-            case BOOLEAN:
-                TypeDenoter t = parseType();
-                String varDecl_name = _currentToken.getTokenText();
-                accept(TokenType.ID);
-                VarDecl vd = new VarDecl(t, varDecl_name, null);
-                accept(TokenType.ASSIGNEQUALS);
-                Expression varDecl_e = parseExpression();
-                accept(TokenType.SEMICOLON);
-                return new VarDeclStmt(vd, varDecl_e, null);
+                return parseStatementReference(thisref, posn);
             case ID:
-                TypeDenoter id_t = new ClassType(new Identifier(_currentToken), null);
-                Reference id = new IdRef(new Identifier(_currentToken), null);
+                // "id id" and "id[] id" declare a variable, anything else starting with id is a reference
+                if (peek(1).getTokenType() == TokenType.ID ||
+                        (peek(1).getTokenType() == TokenType.LBRACKET && peek(2).getTokenType() == TokenType.RBRACKET))
+                    return parseVarDeclStmt(posn);
+                Reference id = new IdRef(new Identifier(_currentToken), posn);
                 accept(TokenType.ID);
-                switch (_currentToken.getTokenType()) {
-                    case LBRACKET:
-                        accept(TokenType.LBRACKET);
-                        if (_currentToken.getTokenType() != TokenType.RBRACKET) {
-                            Expression i = parseExpression();
-                            accept(TokenType.RBRACKET);
-                            accept(TokenType.ASSIGNEQUALS);
-                            Expression e = parseExpression();
-                            accept(TokenType.SEMICOLON);
-                            return new IxAssignStmt(id, i, e, null);
-                        } else {
-                            accept(TokenType.RBRACKET);
-                            id_t = new ArrayType(id_t, null);
-                        }
-                    case ID:
-                        String name = _currentToken.getTokenText();
-                        accept(TokenType.ID);
-                        accept(TokenType.ASSIGNEQUALS);
-                        Expression id_e = parseExpression();
-                        accept(TokenType.SEMICOLON);
-                        VarDecl id_vd = new VarDecl(id_t, name, null);
-                        return new VarDeclStmt(id_vd, id_e, null);
-                    case PERIOD:
-                        while (_currentToken.getTokenType() == TokenType.PERIOD) {
-                            accept(TokenType.PERIOD);
-                            id = new QualRef(id, new Identifier(_currentToken), null);
-                            accept(TokenType.ID);
-                        }
-                    default:
-                        return parseStatementReference(id);
+                while (_currentToken.getTokenType() == TokenType.PERIOD) {
+                    accept(TokenType.PERIOD);
+                    id = new QualRef(id, new Identifier(_currentToken), posn);
+                    accept(TokenType.ID);
                 }
-
+                return parseStatementReference(id, posn);
+            case INT:
+            case BOOLEAN:
+                return parseVarDeclStmt(posn);
             default:
-                _errors.reportError("Invalid Statement");
-                throw new SyntaxError();
+                throw error(posn, "Invalid Statement");
         }
     }
 
-    private StatementReference parseStatementReference(Reference r) throws SyntaxError {
+    // Statements up to the closing }, a broken statement is skipped and reported without ending the list
+    private StatementList parseStatementList() {
+        StatementList sl = new StatementList();
+        while (!atBlockEnd()) {
+            int taken = _taken;
+            try {
+                sl.add(parseStatement());
+            } catch (SyntaxError e) {
+                syncStatement(taken);
+            }
+        }
+        return sl;
+    }
+
+    // Type id = Expression ;
+    private VarDeclStmt parseVarDeclStmt(SourcePosition posn) throws SyntaxError {
+        TypeDenoter t = parseType();
+        String varDecl_name = _currentToken.getTokenText();
+        accept(TokenType.ID);
+        VarDecl vd = new VarDecl(t, varDecl_name, posn);
+        accept(TokenType.ASSIGNEQUALS);
+        Expression varDecl_e = parseExpression();
+        accept(TokenType.SEMICOLON);
+        return new VarDeclStmt(vd, varDecl_e, posn);
+    }
+
+    private StatementReference parseStatementReference(Reference r, SourcePosition posn) throws SyntaxError {
         switch (_currentToken.getTokenType()) {
             case ASSIGNEQUALS:
                 accept(TokenType.ASSIGNEQUALS);
                 Expression assign_e = parseExpression();
                 accept(TokenType.SEMICOLON);
-                return new AssignStmt(r, assign_e, null);
+                return new AssignStmt(r, assign_e, posn);
             case LBRACKET:
                 accept(TokenType.LBRACKET);
                 Expression i = parseExpression();
@@ -259,64 +287,63 @@ public class Parser {
                 accept(TokenType.ASSIGNEQUALS);
                 Expression e = parseExpression();
                 accept(TokenType.SEMICOLON);
-                return new IxAssignStmt(r, i, e, null);
+                return new IxAssignStmt(r, i, e, posn);
             case LPAREN:
                 accept(TokenType.LPAREN);
                 ExprList el = parseArgumentList();
                 accept(TokenType.RPAREN);
                 accept(TokenType.SEMICOLON);
-                return new CallStmt(r, el, null);
+                return new CallStmt(r, el, posn);
             default:
-                _errors.reportError("Invalid Statement with Reference");
-                throw new SyntaxError();
+                throw error(_currentToken.getTokenPosition(), "Invalid Statement with Reference");
         }
     }
 
     private Expression parseExpression() {
-        return parseDisjunction();
-    }
-
-    private Expression parseDisjunction() {
-        return binopExpr(Arrays.asList(BINOPS[0]), this::parseConjunction);
-    }
-
-    private Expression parseConjunction() {
-        return binopExpr(Arrays.asList(BINOPS[1]), this::parseEquality);
-    }
-
-    private Expression parseEquality() {
-        return binopExpr(Arrays.asList(BINOPS[2]), this::parseRelational);
-    }
-
-    private Expression parseRelational() {
-        return binopExpr(Arrays.asList(BINOPS[3]), this::parseAdditive);
-    }
-
-    private Expression parseAdditive() {
-        return binopExpr(Arrays.asList(BINOPS[4]), this::parseMultiplicative);
+        return parseBinary(1);
     }
 
-    private Expression parseMultiplicative() {
-        return binopExpr(Arrays.asList(BINOPS[5]), this::parseUnary);
+    // Precedence climbing: operands bind to any operator of at least minPrec,
+    //  and every binary operator is left associative.
+    private Expression parseBinary(int minPrec) {
+        Expression e = parseUnary();
+        while (true) {
+            OperatorType op = operatorOf(_currentToken);
+            if (op == null || PRECEDENCE[op.ordinal()] < minPrec) return e;
+            Operator o = new Operator(_currentToken);
+            accept(TokenType.OP);
+            Expression bin_e = parseBinary(PRECEDENCE[op.ordinal()] + 1);
+            e = new BinaryExpr(o, e, bin_e, e.posn);
+        }
     }
 
     private Expression parseUnary() {
-        if (Arrays.asList(BINOPS[6]).contains(_currentToken.getTokenText())) {
+        OperatorType op = operatorOf(_currentToken);
+        if (op == OperatorType.MINUS || op == OperatorType.NOT) {
             Operator o = new Operator(_currentToken);
             accept(TokenType.OP);
-            return new UnaryExpr(o, parseUnary(), null);
+            if (op == OperatorType.MINUS) _minusTaken = _taken;
+            return new UnaryExpr(o, parseUnary(), o.posn);
         }
         return parseExpressionNormal();
     }
 
+    private static OperatorType operatorOf(Token t) {
+        return t.getOperator();
+    }
+
     private Expression parseExpressionNormal() throws SyntaxError {
+        SourcePosition posn = _currentToken.getTokenPosition();
         Expression e;
         switch (_currentToken.getTokenType()) {
             case NUM:
             case TRUE:
             case FALSE:
                 Terminal t = _currentToken.getTokenType() == TokenType.NUM ? new IntLiteral(_currentToken) : new BooleanLiteral(_currentToken);
-                e = new LiteralExpr(t, null);
+                if (t instanceof IntLiteral && ((IntLiteral) t).tooLarge
+                        && !(((IntLiteral) t).isMinValueMagnitude() && _taken == _minusTaken))
+                    _errors.reportError(posn, "integer number too large: " + t.spelling);
+                e = new LiteralExpr(t, posn);
                 accept(_currentToken.getTokenType());
                 break;
             case NEW:
@@ -326,27 +353,27 @@ public class Parser {
                         Identifier i = new Identifier(_currentToken);
                         accept(TokenType.ID);
                         if (_currentToken.getTokenType() == TokenType.LPAREN) {
-                            ClassType ct = new ClassType(i, null);
+                            ClassType ct = new ClassType(i, i.posn);
                             accept(TokenType.LPAREN);
                             accept(TokenType.RPAREN);
-                            e = new NewObjectExpr(ct, null);
+                            e = new NewObjectExpr(ct, posn);
                         } else {
                             accept(TokenType.LBRACKET);
                             Expression newArr_e = parseExpression();
                             accept(TokenType.RBRACKET);
-                            e = new NewArrayExpr(new ClassType(i, null), newArr_e, null);
+                            e = new NewArrayExpr(new ClassType(i, i.posn), newArr_e, posn);
                         }
                         break;
                     case INT:
+                        SourcePosition intPosn = _currentToken.getTokenPosition();
                         accept(TokenType.INT);
                         accept(TokenType.LBRACKET);
                         Expression newArr_e = parseExpression();
                         accept(TokenType.RBRACKET);
-                        e = new NewArrayExpr(new BaseType(TypeKind.INT, null), newArr_e, null);
+                        e = new NewArrayExpr(new BaseType(TypeKind.INT, intPosn), newArr_e, posn);
                         break;
                     default:
-                        _errors.reportError("Illegal use of new");
-                        throw new SyntaxError();
+                        throw error(_currentToken.getTokenPosition(), "Illegal use of new");
                 }
                 break;
             case LPAREN:
@@ -357,43 +384,31 @@ public class Parser {
             case ID:
             case THIS:
             case NULL:
-                Reference r = _currentToken.getTokenType() == TokenType.ID ? new IdRef(new Identifier(_currentToken), null) : _currentToken.getTokenType() == TokenType.NULL ? new NullRef(null) : new ThisRef(null);
+                Reference r = _currentToken.getTokenType() == TokenType.ID ? new IdRef(new Identifier(_currentToken), posn) : _currentToken.getTokenType() == TokenType.NULL ? new NullRef(posn) : new ThisRef(posn);
 
                 accept(_currentToken.getTokenType());
                 while (_currentToken.getTokenType() == TokenType.PERIOD) {
                     accept(TokenType.PERIOD);
-                    r = new QualRef(r, new Identifier(_currentToken), null);
+                    r = new QualRef(r, new Identifier(_currentToken), posn);
                     accept(TokenType.ID);
                 }
-                e = new RefExpr(r, null);
+                e = new RefExpr(r, posn);
                 switch (_currentToken.getTokenType()) {
                     case LBRACKET:
                         accept(TokenType.LBRACKET);
                         Expression ix_e = parseExpression();
                         accept(TokenType.RBRACKET);
-                        e = new IxExpr(r, ix_e, null);
+                        e = new IxExpr(r, ix_e, posn);
                         break;
                     case LPAREN:
                         accept(TokenType.LPAREN);
                         ExprList el = parseArgumentList();
                         accept(TokenType.RPAREN);
-                        e = new CallExpr(r, el, null);
+                        e = new CallExpr(r, el, posn);
                 }
                 break;
             default:
-                _errors.reportError("Invalid Expression");
-                throw new SyntaxError();
-        }
-        return e;
-    }
-
-    private Expression binopExpr(List<String> OP, Supplier<Expression> func) {
-        Expression e = func.get();
-        while (_currentToken.getTokenType() == TokenType.OP && OP.contains(_currentToken.getTokenText())) {
-            Operator o = new Operator(_currentToken);
-            accept(TokenType.OP);
-            Expression bin_e = func.get();
-            e = new BinaryExpr(o, e, bin_e, null);
+                throw error(posn, "Invalid Expression");
         }
         return e;
     }
@@ -411,6 +426,20 @@ public class Parser {
         return el;
     }
 
+    // k tokens past _currentToken, scanning ahead in bulk when the ring runs dry
+    private Token peek(int k) {
+        if (k >= LOOKAHEAD) throw new IllegalArgumentException("Lookahead too far: " + k);
+        while (_buffered <= k) fill();
+        return _lookahead[(_head + k) & (LOOKAHEAD - 1)];
+    }
+
+    private void fill() {
+        int tail = (_head + _buffered) & (LOOKAHEAD - 1);
+        // tokens only go up to the end of the array, the rest wraps around on the next fill
+        int room = Math.min(LOOKAHEAD - _buffered, LOOKAHEAD - tail);
+        _buffered += _scanner.scan(_lookahead, tail, room);
+    }
+
     // This method will accept the token and retrieve the next token.
     //  Can be useful if you want to error check and accept all-in-one.
 
@@ -421,19 +450,113 @@ public class Parser {
     private void accept(TokenType expectedType) throws SyntaxError {
         //System.out.println(_currentToken.getTokenType());
         if (_currentToken.getTokenType() == expectedType) {
-            _currentToken = _scanner.scan();
-            if (_currentToken == null) throw new SyntaxError();
+            _panic = false;
+            skip();
+            if (_currentToken.getTokenType() == TokenType.ERROR) {
+                _panic = true; // the scanner has already reported it
+                throw new SyntaxError();
+            }
             return;
         }
 
         // TODO: Report an error here.
         //  "Expected token X, but got Y"
-        _errors.reportError(String.format("Expected token %s, but got %s", expectedType, _currentToken.getTokenType()));
-        throw new SyntaxError();
+        throw error(_currentToken.getTokenPosition(), String.format("Expected token %s, but got %s", expectedType, _currentToken.getTokenType()));
+    }
+
+    private void skip() {
+        _lookahead[_head] = null;
+        _head = (_head + 1) & (LOOKAHEAD - 1);
+        _buffered--;
+        _taken++;
+        _currentToken = peek(0);
+    }
+
+    // Reports unless we are still recovering from an earlier error, so one mistake
+    //  doesn't produce a cascade of follow-on reports.
+    private SyntaxError error(SourcePosition posn, String message) {
+        if (!_panic) _errors.reportError(posn, message);
+        _panic = true;
+        return new SyntaxError();
+    }
+
+    private boolean atBlockEnd() {
+        switch (_currentToken.getTokenType()) {
+            case RCURLY:
+            case EOT:
+            case CLASS: // cannot appear inside a class body, so a } must be missing
+                return true;
+            default:
+                return false;
+        }
     }
 
+    // Skip to just past the next ;, or up to the } closing the list or the start of the next statement.
+    //  taken is the token count when the broken statement started.
+    private void syncStatement(int taken) {
+        while (!atBlockEnd()) {
+            switch (_currentToken.getTokenType()) {
+                case SEMICOLON:
+                    skip();
+                    return;
+                case IF:
+                case WHILE:
+                case RETURN:
+                case LCURLY:
+                    // a statement start we have not tripped over yet
+                    if (_taken > taken) return;
+                    skip(); // the statement that broke, step over its first token
+                    break;
+                default:
+                    skip();
+            }
+        }
+    }
+
+    // Skip the rest of a member: up to a ; or the } closing a method body, or to the end of the class.
+    private void syncMember(int taken) {
+        int depth = 0;
+        while (_currentToken.getTokenType() != TokenType.EOT && _currentToken.getTokenType() != TokenType.CLASS) {
+            switch (_currentToken.getTokenType()) {
+                case LCURLY:
+                    depth++;
+                    break;
+                case RCURLY:
+                    if (depth == 0) return; // closes the class
+                    if (--depth == 0) {
+                        skip();
+                        return;
+                    }
+                    break;
+                case SEMICOLON:
+                    if (depth == 0) {
+                        skip();
+                        return;
+                    }
+                    break;
+                case VISIBILITY:
+                case ACCESS:
+                    if (depth == 0 && _taken > taken) return;
+                    break;
+            }
+            skip();
+        }
+    }
+
+    // a class declaration always consumes its "class" first, so stopping on one always makes progress
+    private void syncClass() {
+        while (_currentToken.getTokenType() != TokenType.CLASS && _currentToken.getTokenType() != TokenType.EOT)
+            skip();
+    }
+
+    // Stackless, recovery throws one of these per syntax error and never looks at the trace
     static class SyntaxError extends Error {
         private static final long serialVersionUID = -6461942006097999362L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
     }
 
 }
@@ -6,65 +6,72 @@ import java.io.IOException;
 import java.io.InputStream;
 
 public class Scanner {
-    private final InputStream _in;
+    // keywords live in a 32 entry table indexed by a perfect hash of (first char, last char, length)
+    private static final String[] KEYWORDS = new String[32];
+    private static final TokenType[] KEYWORD_TYPES = new TokenType[32];
+
+    static {
+        keyword("class", TokenType.CLASS);
+        keyword("this", TokenType.THIS);
+        keyword("public", TokenType.VISIBILITY);
+        keyword("private", TokenType.VISIBILITY);
+        keyword("static", TokenType.ACCESS);
+        keyword("int", TokenType.INT);
+        keyword("boolean", TokenType.BOOLEAN);
+        keyword("true", TokenType.TRUE);
+        keyword("false", TokenType.FALSE);
+        keyword("while", TokenType.WHILE);
+        keyword("if", TokenType.IF);
+        keyword("return", TokenType.RETURN);
+        keyword("else", TokenType.ELSE);
+        keyword("void", TokenType.VOID);
+        keyword("new", TokenType.NEW);
+        keyword("null", TokenType.NULL);
+    }
+
     private final ErrorReporter _errors;
-    private final int _currentLine;
-    private final int _currentCol;
-    private StringBuilder _currentText;
+    private final SourceFile _file;
+    private final byte[] _buf; // whole source file, scanned by index
+    private final int _end;
+    private int _pos;
+    private int _charPos; // index of _currentChar in _buf
+    private int _tokenStart;
+    private final SymbolTable _names;
     private char _currentChar;
 
     public Scanner(InputStream in, ErrorReporter errors) {
-        this._in = in;
+        this(readSource(in, errors), errors);
+    }
+
+    public Scanner(byte[] source, ErrorReporter errors) {
+        this._file = new SourceFile(source);
+        this._buf = source;
+        this._end = source.length;
+        this._pos = 0;
         this._errors = errors;
-        this._currentText = new StringBuilder();
-        this._currentLine = 0; //every newline, increment this and set col to 0
-        this._currentCol = 0; //increment ever nextChar()
+        this._names = new SymbolTable();
 
         nextChar();
     }
 
-    public Token scan() { // returns null if no token can be returned
-        // TODO: This function should check the current char to determine what the token could be.
-
-        // TODO: Consider what happens if the current char is whitespace
-        if (_currentChar == ' ' || _currentChar == '\t' || _currentChar == '\n' || _currentChar == '\r') {
-            skipIt();
-            return scan();
-        }
-        // TODO: Consider what happens if there is a comment (// or /* */)
-        if (_currentChar == '/') {
-            skipIt();
-            if (_currentChar == '/') {
-                skipIt();
-                while (_currentChar != '\n' && _currentChar != '\r' && _currentChar != '\uFFFF') skipIt();
-                return scan();
-            } else if (_currentChar == '*') {
-                skipIt();
-                blockCommentLoop:
-                while (true) {
-                    switch (_currentChar) {
-                        case '*':
-                            skipIt();
-                            if (_currentChar == '/') {
-                                skipIt();
-                                break blockCommentLoop;
-                            }
-                            break;
-                        case '\uFFFF':
-                            _errors.reportError("No end of block comment");
-                            return null;
-                        default:
-                            skipIt();
-                    }
-                }
-                return scan();
-            } else {
-                _currentText = new StringBuilder("/");
-                return makeToken(TokenType.OP);
-            }
+    // Fills buf[off..off+len) with the next tokens, stopping early after EOT or
+    //  an ERROR token. Returns how many tokens were written.
+    public int scan(Token[] buf, int off, int len) {
+        int n = 0;
+        while (n < len) {
+            Token t = scan();
+            buf[off + n++] = t;
+            if (t.getTokenType() == TokenType.EOT || t.getTokenType() == TokenType.ERROR) break;
         }
+        return n;
+    }
+
+    public Token scan() { // returns an ERROR token (already reported) if no token can be returned
+        // TODO: This function should check the current char to determine what the token could be.
+        if (!skipTrivia()) return makeToken(TokenType.ERROR, null);
+        _tokenStart = _charPos;
         // TODO: What happens if there are no more tokens?
-        if (_currentChar == '\uFFFF') return makeToken(TokenType.EOT);
+        if (_currentChar == '\uFFFF') return makeToken(TokenType.EOT, "");
 
 
         // TODO: Determine what the token is. For example, if it is a number
@@ -74,108 +81,138 @@ public class Scanner {
             while (Character.isLetterOrDigit(_currentChar) || _currentChar == '_') {
                 takeIt();
             }
-            switch (_currentText.toString()) {
-                case "class":
-                    return makeToken(TokenType.CLASS);
-                case "this":
-                    return makeToken(TokenType.THIS);
-                case "public":
-                case "private":
-                    return makeToken(TokenType.VISIBILITY);
-                case "static":
-                    return makeToken(TokenType.ACCESS);
-                case "int":
-                    return makeToken(TokenType.INT);
-                case "boolean":
-                    return makeToken(TokenType.BOOLEAN);
-                case "true":
-                    return makeToken(TokenType.TRUE);
-                case "false":
-                    return makeToken(TokenType.FALSE);
-                case "while":
-                    return makeToken(TokenType.WHILE);
-                case "if":
-                    return makeToken(TokenType.IF);
-                case "return":
-                    return makeToken(TokenType.RETURN);
-                case "else":
-                    return makeToken(TokenType.ELSE);
-                case "void":
-                    return makeToken(TokenType.VOID);
-                case "new":
-                    return makeToken(TokenType.NEW);
-                case "null":
-                    return makeToken(TokenType.NULL);
-                default:
-                    return makeToken(TokenType.ID);
-
-
-            }
+            int len = _charPos - _tokenStart;
+            int h = keywordHash(_buf[_tokenStart], _buf[_charPos - 1], len);
+            String kw = KEYWORDS[h];
+            if (kw != null && matches(kw, len)) return makeToken(KEYWORD_TYPES[h], kw);
+            return makeToken(TokenType.ID, _names.intern(_buf, _tokenStart, len));
         } else if (Character.isDigit(_currentChar)) {
             while (Character.isDigit(_currentChar)) {
                 takeIt();
             }
-            return makeToken(TokenType.NUM);
+            return makeToken(TokenType.NUM, _names.intern(_buf, _tokenStart, _charPos - _tokenStart));
         } else {
+            char first = _currentChar;
             switch (_currentChar) {
+                case '/': // comments were already consumed by skipTrivia
+                    takeIt();
+                    return makeOperator(OperatorType.DIVIDE);
                 case '>':
                 case '<':
                 case '!':
                 case '=':
                     takeIt();
-                    if (_currentChar == '=') takeIt();
-                    return !_currentText.toString().equals("=") ? makeToken(TokenType.OP) : makeToken(TokenType.ASSIGNEQUALS);
+                    if (_currentChar == '=') {
+                        takeIt();
+                        return makeOperator(first == '>' ? OperatorType.GTE : first == '<' ? OperatorType.LTE : first == '!' ? OperatorType.NOTEQ : OperatorType.EQEQ);
+                    }
+                    if (first == '=') return makeToken(TokenType.ASSIGNEQUALS, "=");
+                    return makeOperator(first == '>' ? OperatorType.GT : first == '<' ? OperatorType.LT : OperatorType.NOT);
                 case '+':
+                    takeIt();
+                    return makeOperator(OperatorType.PLUS);
                 case '-':
+                    takeIt();
+                    return makeOperator(OperatorType.MINUS);
                 case '*':
                     takeIt();
-                    return makeToken(TokenType.OP);
+                    return makeOperator(OperatorType.TIMES);
                 case '|':
                 case '&':
                     takeIt();
-                    if (_currentChar != _currentText.charAt(0)) {
-                        _errors.reportError("Expected another " + _currentChar);
-                        return null;
+                    if (_currentChar != first) {
+                        _errors.reportError(_file.positionOf(_charPos), "Expected another " + _currentChar);
+                        return makeToken(TokenType.ERROR, null);
                     }
                     takeIt();
-                    return makeToken(TokenType.OP);
+                    return makeOperator(first == '|' ? OperatorType.OROR : OperatorType.ANDAND);
                 case ';':
                     takeIt();
-                    return makeToken(TokenType.SEMICOLON);
+                    return makeToken(TokenType.SEMICOLON, ";");
                 case '.':
                     takeIt();
-                    return makeToken(TokenType.PERIOD);
+                    return makeToken(TokenType.PERIOD, ".");
                 case '[':
                     takeIt();
-                    return makeToken(TokenType.LBRACKET);
+                    return makeToken(TokenType.LBRACKET, "[");
                 case ']':
                     takeIt();
-                    return makeToken(TokenType.RBRACKET);
+                    return makeToken(TokenType.RBRACKET, "]");
                 case ',':
                     takeIt();
-                    return makeToken(TokenType.COMMA);
+                    return makeToken(TokenType.COMMA, ",");
                 case '(':
                     takeIt();
-                    return makeToken(TokenType.LPAREN);
+                    return makeToken(TokenType.LPAREN, "(");
                 case ')':
                     takeIt();
-                    return makeToken(TokenType.RPAREN);
+                    return makeToken(TokenType.RPAREN, ")");
                 case '{':
                     takeIt();
-                    return makeToken(TokenType.LCURLY);
+                    return makeToken(TokenType.LCURLY, "{");
                 case '}':
                     takeIt();
-                    return makeToken(TokenType.RCURLY);
+                    return makeToken(TokenType.RCURLY, "}");
                 default:
-                    _errors.reportError("Didn't understand character " + _currentChar + ". Code: " + (int) _currentChar);
-                    return null;
+                    _errors.reportError(_file.positionOf(_charPos), "Didn't understand character " + _currentChar + ". Code: " + (int) _currentChar);
+                    takeIt();
+                    return makeToken(TokenType.ERROR, null);
             }
         }
 
     }
 
+    // Whitespace and comments in one loop, so long runs of them cost no stack.
+    //  Returns false if the input ends inside a block comment.
+    private boolean skipTrivia() {
+        while (true) {
+            switch (_currentChar) {
+                // TODO: Consider what happens if the current char is whitespace
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\r':
+                    skipIt();
+                    break;
+                // TODO: Consider what happens if there is a comment (// or /* */)
+                case '/':
+                    int next = peekChar();
+                    if (next == '/') {
+                        skipIt();
+                        skipIt();
+                        while (_currentChar != '\n' && _currentChar != '\r' && _currentChar != '\uFFFF') skipIt();
+                    } else if (next == '*') {
+                        skipIt();
+                        skipIt();
+                        blockCommentLoop:
+                        while (true) {
+                            switch (_currentChar) {
+                                case '*':
+                                    skipIt();
+                                    if (_currentChar == '/') {
+                                        skipIt();
+                                        break blockCommentLoop;
+                                    }
+                                    break;
+                                case '\uFFFF':
+                                    _errors.reportError(_file.positionOf(_charPos), "No end of block comment");
+                                    return false;
+                                default:
+                                    skipIt();
+                            }
+                        }
+                    } else {
+                        return true; // a plain division operator
+                    }
+                    break;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    // the token's text is whatever lies between _tokenStart and _currentChar, nothing is copied
     private void takeIt() {
-        _currentText.append(_currentChar);
         nextChar();
     }
 
@@ -183,29 +220,55 @@ public class Scanner {
         nextChar();
     }
 
-    private void nextChar() {
-        try {
-            int c = _in.read();
-            _currentChar = (char) c;
+    private int peekChar() {
+        return _pos < _end ? _buf[_pos] & 0xFF : -1;
+    }
 
-            // TODO: What happens if c == -1?
+    private void nextChar() {
+        // past the end of the buffer we hand out -1, the same as read() used to
+        _charPos = _pos;
+        int c = _pos < _end ? _buf[_pos++] & 0xFF : -1;
+        _currentChar = (char) c;
 
+        // TODO: What happens if c is not a regular ASCII character?
+        if ((c < 32 || c > 126) && c != 10 && c != 13 && c != -1 && c != 9)
+            _errors.reportError(_file.positionOf(_charPos), "Not printable ASCII char " + c);
+    }
 
-            // TODO: What happens if c is not a regular ASCII character?
-            if ((c < 32 || c > 126) && c != 10 && c != 13 && c != -1 && c != 9)
-                _errors.reportError("Not printable ASCII char " + c);
+    // Pulls the whole file in with bulk reads instead of one read() call per character
+    private static byte[] readSource(InputStream in, ErrorReporter errors) {
+        try (InputStream source = in) {
+            return source.readAllBytes();
         } catch (IOException e) {
-            // TODO: Report an error here
-            _errors.reportError("IO exception, Line: " + _currentLine + " Column: " + _currentCol);
+            errors.reportError("IO exception while reading source: " + e.getMessage());
+            return new byte[0];
         }
     }
 
-    private Token makeToken(TokenType toktype) {
-        //System.out.println(_currentText);
-        // TODO: return a new Token with the appropriate type and text
-        //  contained in
-        Token token = new Token(toktype, _currentText.toString());
-        _currentText = new StringBuilder();
-        return token;
+    // spelling is a shared constant (keywords, symbols) or an interned name or number
+    private Token makeToken(TokenType toktype, String spelling) {
+        return new Token(toktype, _file, _tokenStart, spelling, null);
+    }
+
+    // operators are classified here once, later phases switch on the enum instead of the spelling
+    private Token makeOperator(OperatorType op) {
+        return new Token(TokenType.OP, _file, _tokenStart, op.spelling, op);
+    }
+
+    private boolean matches(String kw, int len) {
+        if (kw.length() != len) return false;
+        for (int i = 0; i < len; i++)
+            if (kw.charAt(i) != _buf[_tokenStart + i]) return false;
+        return true;
+    }
+
+    private static int keywordHash(int first, int last, int len) {
+        return (first * 6 + last * 9 + len) & 31;
+    }
+
+    private static void keyword(String kw, TokenType type) {
+        int h = keywordHash(kw.charAt(0), kw.charAt(kw.length() - 1), kw.length());
+        KEYWORDS[h] = kw;
+        KEYWORD_TYPES[h] = type;
     }
 }
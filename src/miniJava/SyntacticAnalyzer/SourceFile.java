@@ -0,0 +1,41 @@
+package miniJava.SyntacticAnalyzer;
+
+import java.util.Arrays;
+
+// The scanned source buffer shared by every token. Tokens only remember their
+//  offset; line and column are worked out from a line-start index that is
+//  built the first time anybody asks for a position.
+public class SourceFile {
+    final byte[] bytes;
+    private int[] _lineStarts;
+    private int _lineCount;
+
+    public SourceFile(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public int length() {
+        return bytes.length;
+    }
+
+    public SourcePosition positionOf(int offset) {
+        if (offset < 0) return null;
+        if (_lineStarts == null) indexLines();
+        int i = Arrays.binarySearch(_lineStarts, 0, _lineCount, offset);
+        int line = i >= 0 ? i : -i - 2;
+        return new SourcePosition(line + 1, offset - _lineStarts[line] + 1);
+    }
+
+    private void indexLines() {
+        int[] starts = new int[64];
+        int count = 0;
+        starts[count++] = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') continue;
+            if (count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+            starts[count++] = i + 1;
+        }
+        _lineStarts = starts;
+        _lineCount = count;
+    }
+}
@@ -9,5 +9,16 @@ public class SourcePosition {
         _col = col;
     }
 
+    public int getLine() {
+        return _line;
+    }
+
+    public int getCol() {
+        return _col;
+    }
 
+    @Override
+    public String toString() {
+        return _line + ":" + _col;
+    }
 }
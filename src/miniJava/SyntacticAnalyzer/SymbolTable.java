@@ -0,0 +1,66 @@
+package miniJava.SyntacticAnalyzer;
+
+import java.nio.charset.StandardCharsets;
+
+// Interns identifier and number spellings straight out of the scanner's
+//  source buffer, so every distinct name becomes exactly one String and
+//  repeated uses of a name allocate nothing.
+public class SymbolTable {
+    private String[] _names;
+    private int[] _hashes;
+    private int _count;
+
+    public SymbolTable() {
+        _names = new String[256];
+        _hashes = new int[256];
+        _count = 0;
+    }
+
+    public String intern(byte[] buf, int start, int len) {
+        int h = hash(buf, start, len);
+        int mask = _names.length - 1;
+        int i = h & mask;
+        while (_names[i] != null) {
+            if (_hashes[i] == h && matches(_names[i], buf, start, len)) return _names[i];
+            i = (i + 1) & mask;
+        }
+        // String.intern() so names also line up with the literals used for the predefined classes
+        String name = new String(buf, start, len, StandardCharsets.ISO_8859_1).intern();
+        _names[i] = name;
+        _hashes[i] = h;
+        if (++_count * 2 > _names.length) grow();
+        return name;
+    }
+
+    public int size() {
+        return _count;
+    }
+
+    private void grow() {
+        String[] oldNames = _names;
+        int[] oldHashes = _hashes;
+        _names = new String[oldNames.length * 2];
+        _hashes = new int[oldNames.length * 2];
+        int mask = _names.length - 1;
+        for (int j = 0; j < oldNames.length; j++) {
+            if (oldNames[j] == null) continue;
+            int i = oldHashes[j] & mask;
+            while (_names[i] != null) i = (i + 1) & mask;
+            _names[i] = oldNames[j];
+            _hashes[i] = oldHashes[j];
+        }
+    }
+
+    private static int hash(byte[] buf, int start, int len) {
+        int h = 0;
+        for (int i = start; i < start + len; i++) h = 31 * h + (buf[i] & 0xFF);
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(String s, byte[] buf, int start, int len) {
+        if (s.length() != len) return false;
+        for (int i = 0; i < len; i++)
+            if (s.charAt(i) != (buf[start + i] & 0xFF)) return false;
+        return true;
+    }
+}
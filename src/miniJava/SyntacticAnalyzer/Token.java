@@ -2,12 +2,28 @@ package miniJava.SyntacticAnalyzer;
 
 public class Token {
     private final TokenType _type;
+    // where the token sits in the scanner's source buffer, _start is -1 for made up tokens
+    private final SourceFile _source;
+    private final int _start;
     private final String _text;
+    private final OperatorType _op; // set by the scanner on OP tokens, null otherwise
 
     public Token(TokenType type, String text) {
         // TODO: Store the token's type and text
         _type = type;
         _text = text;
+        _source = null;
+        _start = -1;
+        _op = null;
+    }
+
+    // text is always the token's exact spelling, so the length falls out of it
+    Token(TokenType type, SourceFile source, int start, String text, OperatorType op) {
+        _type = type;
+        _source = source;
+        _start = start;
+        _text = text;
+        _op = op;
     }
 
     public TokenType getTokenType() {
@@ -20,7 +36,20 @@ public class Token {
         return _text;
     }
 
+    public OperatorType getOperator() {
+        return _op;
+    }
+
+    public int getStart() {
+        return _start;
+    }
+
+    public int getLength() {
+        return _text == null ? 0 : _text.length();
+    }
+
+    // positions are resolved on demand, tokens themselves only carry their offset
     public SourcePosition getTokenPosition() {
-        return null;
+        return _source == null ? null : _source.positionOf(_start);
     }
 }
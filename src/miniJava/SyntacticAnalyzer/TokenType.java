@@ -42,5 +42,6 @@ public enum TokenType {
     NUM,
     NEW,
     EOT,
-    NULL
+    NULL,
+    ERROR // something the scanner could not make sense of, already reported
 }
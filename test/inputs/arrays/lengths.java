@@ -0,0 +1,52 @@
+// lengths come from the evaluated size and survive any number of later allocations
+class Lengths {
+    int v;
+
+    public static void main(String[] args) {
+        int[] empty = new int[0];
+        System.out.println(empty.length);
+        int n = 3;
+        int[] a = new int[n * 4 + 1];
+        System.out.println(a.length);
+        int i = 0;
+        while (i < a.length) {
+            a[i] = i * i;
+            i = i + 1;
+        }
+        System.out.println(a[12]);
+
+        // far more than one page
+        int[] big = new int[1000000];
+        big[999999] = 7;
+        System.out.println(big.length);
+        System.out.println(big[999999] + big[0]);
+
+        // many small arrays, each with its own length and contents
+        int sum = 0;
+        i = 0;
+        while (i < 200000) {
+            int[] s = new int[i / 1000 + 1];
+            s[s.length - 1] = 1;
+            sum = sum + s.length + s[s.length - 1];
+            i = i + 1;
+        }
+        System.out.println(sum);
+        System.out.println(a.length + a[1] + a[12]);
+
+        Lengths[] objs = new Lengths[2];
+        Lengths o = new Lengths();
+        o.v = 9;
+        objs[1] = o;
+        o = objs[1];
+        if (objs[0] == null) System.out.println(objs.length + o.v);
+    }
+}
+// expect: 0
+// expect: 13
+// expect: 144
+// expect: 1000000
+// expect: 7
+// expect: 20300000
+// expect: 158
+// expect: 11
+// status: 0
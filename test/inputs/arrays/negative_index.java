@@ -0,0 +1,10 @@
+class NegativeIndex {
+    public static void main(String[] args) {
+        int[] a = new int[4];
+        System.out.println(a.length);
+        int i = 0 - 1;
+        System.out.println(a[i]);
+    }
+}
+// expect: 4
+// status: 1
@@ -0,0 +1,9 @@
+class NegativeSize {
+    public static void main(String[] args) {
+        System.out.println(1);
+        int[] a = new int[0 - 1];
+        System.out.println(a.length);
+    }
+}
+// expect: 1
+// status: 1
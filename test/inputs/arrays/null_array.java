@@ -0,0 +1,11 @@
+// a static array nobody assigned is null, .length on it faults
+class NullArray {
+    static int[] a;
+
+    public static void main(String[] args) {
+        System.out.println(2);
+        System.out.println(a.length);
+    }
+}
+// expect: 2
+// status: 1
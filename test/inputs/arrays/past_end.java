@@ -0,0 +1,12 @@
+// an index equal to the length is out of bounds, the output so far is still written
+class PastEnd {
+    public static void main(String[] args) {
+        int[] a = new int[4];
+        a[3] = 3;
+        System.out.println(a[3]);
+        a[a.length] = 4;
+        System.out.println(5);
+    }
+}
+// expect: 3
+// status: 1
@@ -0,0 +1,33 @@
+class A {
+    int x;
+    int x;
+    B b;
+    void m(int p) {
+        int v = u + w;
+        int p = 1;
+        v = x + y;
+        q.f = 3;
+        this.nope = 1;
+        C c = new C();
+        undefinedMethod(v);
+        int v = 2;
+        int z = z + 1;
+    }
+    void m() { }
+}
+class A { }
+// expect: 18:1: Variable already declared
+// expect: 3:5: Variable already declared
+// expect: 4:5: not class type
+// expect: 16:5: Variable already declared
+// expect: 6:17: Declaration not found: u
+// expect: 6:21: Declaration not found: w
+// expect: 7:9: Variable already declared
+// expect: 8:17: Declaration not found: y
+// expect: 9:9: Declaration not found: q
+// expect: 10:14: failed to find declaration of id in class
+// expect: 11:9: not class type
+// expect: 11:19: not class type
+// expect: 12:9: Declaration not found: undefinedMethod
+// expect: 13:9: Variable already declared
+// expect: 14:17: used same id in vardecl
@@ -0,0 +1,25 @@
+// every name resolves, including the predefined System, String and _PrintStream
+class A {
+    int x;
+    static A shared;
+    B b;
+
+    public static void main(String[] args) {
+        A a = new A();
+        a.b = new B();
+        a.b.a = a;
+        shared = a.b.a;
+        int x = a.get(3);
+        System.out.println(x + shared.x);
+    }
+
+    int get(int v) {
+        x = v;
+        { int w = v; x = x + w; }
+        { int w = 1; x = x + w; }
+        return this.x + b.a.x;
+    }
+}
+class B {
+    A a;
+}
@@ -0,0 +1,14 @@
+class A {
+    int x;
+}
+class B extends A { }
+class C {
+    int z;
+}
+klass D { }
+class E {
+    void m() { z = 1; }
+}
+// classes: A C E
+// expect: 4:9: Expected token LCURLY, but got ID
+// expect: 8:1: Expected class declaration
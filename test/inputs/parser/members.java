@@ -0,0 +1,13 @@
+class A {
+    int x;
+    private int 5;
+    void ok() { x = 1; }
+    public int[] f(int a,) { return a; }
+    int y;
+    boolean z = true;
+    void last() { }
+}
+// classes: A
+// expect: 3:17: Expected token ID, but got NUM
+// expect: 5:26: Invalid Type RPAREN
+// expect: 7:15: Not a field or method declaration
@@ -0,0 +1,18 @@
+class A {
+    int x;
+    void m() {
+        x = ;
+        int y = 3;
+        if (y > ) y = 1;
+        while (true) { y = y + 1 }
+        y = y + 1;
+        A a = new A(;
+        return;
+    }
+    void ok() { x = 1; }
+}
+// classes: A
+// expect: 4:13: Invalid Expression
+// expect: 6:17: Invalid Expression
+// expect: 7:34: Expected token SEMICOLON, but got RCURLY
+// expect: 9:21: Expected token RPAREN, but got SEMICOLON
@@ -0,0 +1,27 @@
+// recovery must not change anything about a program without mistakes
+class A {
+    public static int[] a;
+    private boolean b;
+    A next;
+
+    public static void main(String[] args) {
+        A t = new A();
+        t.next = null;
+        a = new int[10];
+        int i = 0;
+        while (i < a.length) {
+            a[i] = -i * 2 + 1;
+            i = i + 1;
+        }
+        if (!t.b && a[0] != 1 || t == null) return;
+        else {
+            System.out.println(t.sum(a.length, 3));
+        }
+    }
+
+    int sum(int x, int y) {
+        return x + y;
+    }
+}
+class B { }
+// classes: A B
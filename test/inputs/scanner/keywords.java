@@ -0,0 +1,4 @@
+class this public private static int boolean true false while if return else void new null
+// near misses: same first and last character and length as a keyword, or a keyword with more or less
+clas classs cless Class thes thiss pubLic privaTe statIc iNt boolEan trUe falsE whIle iff If reTurn elsE vaid nEw nulL
+classA class_ int0 null1 xif ifx
@@ -0,0 +1,14 @@
+// one of every kind of token, ScannerTest checks the stream against its own list
+class Tokens {
+    public static int[] a;
+    private boolean b;
+    void m(int x, Tokens t) {
+        if (x <= 10 && !b || x != -1) {
+            a[x] = x * 2 / 3 + x - 1;
+        } else while (x >= 0 == true) x = x - 1;
+        t = new Tokens();
+        t = null;
+        b = false; b = x > 2 || x < 3 && this == t;
+        return;
+    }
+}
@@ -0,0 +1,5 @@
+/**/ a /***/ b /* ** / * */ c
+// c */ still a comment
+d/**//e
+/* spans
+   lines */ f // no newline at the end
\ No newline at end of file
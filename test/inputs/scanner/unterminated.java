@@ -0,0 +1 @@
+g /* never closed
\ No newline at end of file
@@ -0,0 +1,63 @@
+package miniJava;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+// The tests are plain main()s, this counts their cases and prints the ones that fail.
+public class Check {
+    private static int _cases = 0;
+    private static int _failed = 0;
+
+    public static void equal(String what, Object want, Object got) {
+        _cases++;
+        if (Objects.equals(want, got)) return;
+        _failed++;
+        System.out.println("FAIL " + what + "\n  want " + want + "\n  got  " + got);
+    }
+
+    public static void that(String what, boolean ok) {
+        equal(what, true, ok);
+    }
+
+    // ErrorReporter only prints, so its output is captured while r runs
+    public static String stdout(Runnable r) {
+        PrintStream old = System.out;
+        ByteArrayOutputStream b = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(b, true));
+        try {
+            r.run();
+        } finally {
+            System.setOut(old);
+        }
+        return b.toString();
+    }
+
+    // the inputs of one test directory, in name order
+    public static File[] inputs(String dir) {
+        File[] inputs = new File(dir).listFiles((d, name) -> name.endsWith(".java"));
+        Arrays.sort(inputs);
+        return inputs;
+    }
+
+    // inputs end with what they expect, one "// <key>: <text>" comment per line
+    public static List<String> expected(File input, String key) throws IOException {
+        List<String> out = new ArrayList<>();
+        String prefix = "// " + key + ": ";
+        for (String line : Files.readAllLines(input.toPath()))
+            if (line.startsWith(prefix)) out.add(line.substring(prefix.length()));
+        return out;
+    }
+
+    // prints the tally, a failure makes the exit status nonzero for run.sh
+    public static void done(String suite) {
+        System.out.println(suite + ": " + _cases + " cases, " + _failed + " failed");
+        if (_failed > 0) System.exit(1);
+    }
+}
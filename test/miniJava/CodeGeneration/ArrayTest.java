@@ -0,0 +1,58 @@
+package miniJava.CodeGeneration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import miniJava.Check;
+
+// Array allocation regressions. Every input in test/inputs/arrays is compiled in a scratch directory
+//  and its a.out run, the output must match its "// expect:" lines and the exit status its "// status:".
+//  a.out is a Linux x86-64 ELF, anywhere else the programs are only compiled.
+public class ArrayTest {
+	static final String INPUTS = "test/inputs/arrays/";
+	static final boolean RUNNABLE = System.getProperty("os.name").equals("Linux")
+			&& System.getProperty("os.arch").equals("amd64");
+	
+	public static void main(String[] args) throws Exception {
+		for( File f : Check.inputs(INPUTS) )
+			compileAndRun(f);
+		Check.done("ArrayTest");
+	}
+	
+	static void compileAndRun(File f) throws Exception {
+		Path dir = Files.createTempDirectory("arrays");
+		File aout = dir.resolve("a.out").toFile();
+		try {
+			String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+			Process c = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "miniJava.Compiler",
+					f.getAbsolutePath()).directory(dir.toFile()).redirectErrorStream(true).start();
+			// the compiler is silent when it succeeds
+			Check.equal(f.getName() + " compiles", "", output(c).trim());
+			if( !aout.isFile() || !RUNNABLE )
+				return;
+			
+			aout.setExecutable(true);
+			Process p = new ProcessBuilder(aout.getPath()).directory(dir.toFile()).start();
+			String out = output(p);
+			List<String> got = out.isEmpty() ? List.of() : Arrays.asList(out.split("\n"));
+			Check.equal(f.getName() + " output", Check.expected(f, "expect"), got);
+			Check.equal(f.getName() + " status", Check.expected(f, "status").toString(), "[" + p.exitValue() + "]");
+		} finally {
+			aout.delete();
+			dir.toFile().delete();
+		}
+	}
+	
+	static String output(Process p) throws IOException, InterruptedException {
+		String out = new String(p.getInputStream().readAllBytes());
+		if( !p.waitFor(30, TimeUnit.SECONDS) )
+			p.destroyForcibly();
+		return out;
+	}
+}
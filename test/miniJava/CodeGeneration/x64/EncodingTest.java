@@ -0,0 +1,157 @@
+package miniJava.CodeGeneration.x64;
+
+import java.nio.ByteBuffer;
+
+import miniJava.Check;
+import miniJava.CodeGeneration.x64.ISA.*;
+
+import static miniJava.CodeGeneration.x64.Reg64.*;
+
+// Golden encodings for the ISA classes. The expected bytes come from the Intel SDM
+//  tables (checked once against objdump), every encoder should pick the smallest form.
+public class EncodingTest {
+	public static void main(String[] args) {
+		immediates();
+		operands();
+		branches();
+		Check.done("EncodingTest");
+	}
+	
+	static void immediates() {
+		Check.that("isOneByte(127)", x64.isOneByte(127));
+		Check.that("isOneByte(-128)", x64.isOneByte(-128));
+		Check.that("!isOneByte(128)", !x64.isOneByte(128));
+		Check.that("!isOneByte(-129)", !x64.isOneByte(-129));
+		
+		bytes("6A 05", new Push(5));
+		bytes("6A 7F", new Push(127));
+		bytes("68 80 00 00 00", new Push(128));
+		bytes("6A 80", new Push(-128));
+		bytes("68 7F FF FF FF", new Push(-129));
+		
+		bytes("48 83 C4 10", new Add(new R(RSP, true), 16));
+		bytes("48 83 C3 7F", new Add(new R(RBX, true), 127));
+		bytes("48 81 C3 80 00 00 00", new Add(new R(RBX, true), 128));
+		bytes("48 83 C3 80", new Add(new R(RBX, true), -128));
+		bytes("48 81 C3 7F FF FF FF", new Add(new R(RBX, true), -129));
+		// op rax,imm32 has its own opcode without a modrm byte
+		bytes("48 05 E8 03 00 00", new Add(new R(RAX, true), 1000));
+		bytes("48 2D E8 03 00 00", new Sub(new R(RAX, true), 1000));
+		bytes("48 25 E8 03 00 00", new And(new R(RAX, true), 1000));
+		bytes("48 3D E8 03 00 00", new Cmp(new R(RAX, true), 1000));
+		bytes("48 83 7D F8 05", new Cmp(new R(RBP, -8), 5, true));
+		bytes("48 6B DB 03", new Imul(RBX, new R(RBX, true), 3));
+		bytes("48 6B DB 7F", new Imul(RBX, new R(RBX, true), 127));
+		bytes("48 69 DB 80 00 00 00", new Imul(RBX, new R(RBX, true), 128));
+		
+		// mov r32,imm32 zero extends, negative values need the sign extended r/m64 form
+		bytes("BB 07 00 00 00", new Mov_rmi(new R(RBX, true), 7));
+		bytes("41 B9 07 00 00 00", new Mov_rmi(new R(R9, true), 7));
+		bytes("48 C7 C3 FF FF FF FF", new Mov_rmi(new R(RBX, true), -1));
+		bytes("48 C7 45 F8 03 00 00 00", new Mov_rmi(new R(RBP, -8), 3, true));
+		bytes("B8 01 00 00 00", new Mov_ri64(RAX, 1));
+		bytes("48 C7 C0 FF FF FF FF", new Mov_ri64(RAX, -1));
+		bytes("49 B8 89 67 45 23 01 00 00 00", new Mov_ri64(R8, 0x123456789L));
+	}
+	
+	// register and memory operands, including the rsp/r12 SIB and rbp/r13 disp8 special cases
+	static void operands() {
+		bytes("53", new Push(RBX));
+		bytes("41 54", new Push(R12));
+		bytes("41 5F", new Pop(R15));
+		bytes("48 89 5D F8", new Mov_rmr(new R(RBP, -8, RBX)));
+		bytes("48 8B 45 10", new Mov_rrm(new R(RBP, 16, RAX)));
+		bytes("48 8B 8D 38 FF FF FF", new Mov_rrm(new R(RBP, -200, RCX)));
+		bytes("48 8B 44 24 08", new Mov_rrm(new R(RSP, 8, RAX)));
+		bytes("48 8B 04 24", new Mov_rrm(new R(RSP, 0, RAX)));
+		bytes("49 8B 04 24", new Mov_rrm(new R(R12, 0, RAX)));
+		bytes("49 8B 45 00", new Mov_rrm(new R(R13, 0, RAX)));
+		bytes("48 8B 03", new Mov_rrm(new R(RBX, 0, RAX)));
+		bytes("48 8B 1C CB", new Mov_rrm(new R(RBX, RCX, 8, 0, RBX)));
+		bytes("48 89 54 CD 10", new Mov_rmr(new R(RBP, RCX, 8, 16, RDX)));
+		bytes("48 2B 5D F0", new Sub(RBX, new R(RBP, -16)));
+	}
+	
+	// InstructionList.layout picks rel8 while the target is within [-128,127] of the next instruction
+	static void branches() {
+		StringBuilder pushes = new StringBuilder();
+		for( int i = 0; i < 128; ++i )
+			pushes.append(" 53");
+		String p127 = pushes.substring(0, 127 * 3), p126 = pushes.substring(3, 127 * 3);
+		
+		InstructionList l = new InstructionList();
+		Label L = new Label();
+		l.add(new Jmp(L));
+		pushRbx(l, 127);
+		l.bind(L);
+		layout("jmp forward 127", "EB 7F" + p127, l);
+		
+		l = new InstructionList();
+		L = new Label();
+		l.add(new Jmp(L));
+		pushRbx(l, 128);
+		l.bind(L);
+		layout("jmp forward 128", "E9 80 00 00 00" + pushes, l);
+		
+		l = new InstructionList();
+		L = new Label();
+		l.bind(L);
+		pushRbx(l, 126);
+		l.add(new Jmp(L));
+		layout("jmp back 128", p126.trim() + " EB 80", l);
+		
+		l = new InstructionList();
+		L = new Label();
+		l.bind(L);
+		pushRbx(l, 127);
+		l.add(new Jmp(L));
+		layout("jmp back 129", p127.trim() + " E9 7C FF FF FF", l);
+		
+		l = new InstructionList();
+		L = new Label();
+		l.add(new CondJmp(Condition.E, L));
+		l.bind(L);
+		l.add(new Ret());
+		layout("je next", "74 00 C3", l);
+		
+		l = new InstructionList();
+		L = new Label();
+		l.add(new CondJmp(Condition.LT, L));
+		pushRbx(l, 128);
+		l.bind(L);
+		layout("jl forward 128", "0F 8C 80 00 00 00" + pushes, l);
+		
+		// there is no rel8 call
+		l = new InstructionList();
+		L = new Label();
+		l.add(new Call(L));
+		l.bind(L);
+		l.add(new Ret());
+		layout("call next", "E8 00 00 00 00 C3", l);
+	}
+	
+	static void pushRbx(InstructionList l, int n) {
+		for( int i = 0; i < n; ++i )
+			l.add(new Push(RBX));
+	}
+	
+	static void bytes(String want, Instruction ins) {
+		ByteBuffer b = ins.getBytes();
+		StringBuilder got = new StringBuilder();
+		while( b.hasRemaining() )
+			hex(got, b.get());
+		Check.equal(ins.getClass().getSimpleName() + " " + want, want, got.toString().trim());
+	}
+	
+	static void layout(String what, String want, InstructionList l) {
+		l.layout();
+		StringBuilder got = new StringBuilder();
+		for( byte b : l.getBytes() )
+			hex(got, b);
+		Check.equal(what, want, got.toString().trim());
+	}
+	
+	static void hex(StringBuilder sb, byte b) {
+		sb.append(String.format(" %02X", b));
+	}
+}
@@ -0,0 +1,40 @@
+package miniJava.ContextualAnalysis;
+
+import miniJava.AbstractSyntaxTrees.Package;
+import miniJava.Check;
+import miniJava.ErrorReporter;
+import miniJava.SyntacticAnalyzer.Parser;
+import miniJava.SyntacticAnalyzer.Scanner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+// Identification regressions. Each input in test/inputs/identification parses cleanly and ends
+//  with every error one identification pass must report, "// expect: line:col: message" in order.
+public class IdentificationTest {
+    static final String INPUTS = "test/inputs/identification/";
+
+    public static void main(String[] args) throws IOException {
+        for (File f : Check.inputs(INPUTS))
+            identify(f);
+        Check.done("IdentificationTest");
+    }
+
+    static void identify(File f) throws IOException {
+        ErrorReporter errors = new ErrorReporter();
+        Package p = new Parser(new Scanner(new FileInputStream(f), errors), errors).parse();
+        Check.that(f.getName() + " parses", p != null && !errors.hasErrors());
+        if (p == null || errors.hasErrors()) return;
+
+        // an unresolved name is reported and the pass goes on, it never throws out of here
+        String got;
+        try {
+            new Identification(new ScopedIdentification(), errors).runIdentification(p);
+            got = errors.hasErrors() ? Check.stdout(errors::outputErrors).trim() : "[]";
+        } catch (RuntimeException e) {
+            got = e.toString();
+        }
+        Check.equal(f.getName() + " errors", Check.expected(f, "expect").toString(), got);
+    }
+}
@@ -0,0 +1,40 @@
+package miniJava.SyntacticAnalyzer;
+
+import miniJava.AbstractSyntaxTrees.ClassDecl;
+import miniJava.AbstractSyntaxTrees.Package;
+import miniJava.Check;
+import miniJava.ErrorReporter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Parser recovery regressions. Every input in test/inputs/parser ends with the errors one
+//  parse must report, "// expect: line:col: message" in order, and the classes that
+//  survive recovery, "// classes: A B".
+public class ParserTest {
+    static final String INPUTS = "test/inputs/parser/";
+
+    public static void main(String[] args) throws IOException {
+        for (File f : Check.inputs(INPUTS))
+            recovery(f);
+        Check.done("ParserTest");
+    }
+
+    static void recovery(File f) throws IOException {
+        List<String> expect = Check.expected(f, "expect");
+        String classes = String.join(" ", Check.expected(f, "classes"));
+
+        ErrorReporter errors = new ErrorReporter();
+        Package p = new Parser(new Scanner(new FileInputStream(f), errors), errors).parse();
+        String got = errors.hasErrors() ? Check.stdout(errors::outputErrors).trim() : "[]";
+        Check.equal(f.getName() + " errors", expect.toString(), got);
+
+        List<String> names = new ArrayList<>();
+        if (p != null)
+            for (ClassDecl cd : p.classDeclList) names.add(cd.name);
+        Check.equal(f.getName() + " classes", classes, String.join(" ", names));
+    }
+}
@@ -0,0 +1,149 @@
+package miniJava.SyntacticAnalyzer;
+
+import miniJava.Check;
+import miniJava.ErrorReporter;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// Scanner regressions, run from the repository root so test/inputs resolves.
+public class ScannerTest {
+    static final String INPUTS = "test/inputs/scanner/";
+
+    public static void main(String[] args) throws Exception {
+        bulkRead();
+        keywordsAndNames();
+        trivia();
+        Check.done("ScannerTest");
+    }
+
+    // the source is read whole, however the stream hands it over, and tokens point back into it
+    static void bulkRead() throws IOException {
+        byte[] src = Files.readAllBytes(Paths.get(INPUTS + "tokens.java"));
+        List<String> direct = spellings(new Scanner(src, new ErrorReporter()));
+        Check.equal("tokens.java first tokens", "CLASS class,ID Tokens,LCURLY {", String.join(",", direct.subList(0, 3)));
+        Check.equal("tokens.java ends with EOT", "EOT ", direct.get(direct.size() - 1));
+        Check.equal("FileInputStream", direct, spellings(new Scanner(new FileInputStream(INPUTS + "tokens.java"), new ErrorReporter())));
+        Dribble d = new Dribble(src);
+        Check.equal("short reads", direct, spellings(new Scanner(d, new ErrorReporter())));
+        Check.that("short reads were all taken", d.reads > src.length / 3);
+
+        Scanner s = new Scanner(src, new ErrorReporter());
+        boolean at = true;
+        for (Token t = s.scan(); t.getTokenType() != TokenType.EOT; t = s.scan())
+            at &= new String(src, t.getStart(), t.getLength(), StandardCharsets.ISO_8859_1).equals(t.getTokenText());
+        Check.that("token offsets match their spelling", at);
+
+        // a batch of tokens at a time gives the same stream as one at a time
+        s = new Scanner(src, new ErrorReporter());
+        Token[] buf = new Token[7];
+        List<String> batched = new ArrayList<>();
+        int n;
+        do {
+            n = s.scan(buf, 0, buf.length);
+            for (int i = 0; i < n; i++) batched.add(spelling(buf[i]));
+        } while (n == buf.length);
+        Check.equal("scan(Token[],off,len)", direct, batched);
+
+        Check.equal("empty input", List.of("EOT "), spellings(new Scanner(new byte[0], new ErrorReporter())));
+
+        // several megabytes, well past any single read
+        StringBuilder big = new StringBuilder();
+        String text = new String(src, StandardCharsets.ISO_8859_1);
+        while (big.length() < 4 << 20) big.append(text);
+        int copies = big.length() / text.length();
+        byte[] bigSrc = big.toString().getBytes(StandardCharsets.ISO_8859_1);
+        Check.equal("large input token count", copies * (direct.size() - 1) + 1, spellings(new Scanner(new Dribble(bigSrc), new ErrorReporter())).size());
+    }
+
+    // keywords come out of the hash table by type, every other word is an ID whose spelling exists once
+    static void keywordsAndNames() throws IOException {
+        Scanner s = new Scanner(new FileInputStream(INPUTS + "keywords.java"), new ErrorReporter());
+        TokenType[] kw = {TokenType.CLASS, TokenType.THIS, TokenType.VISIBILITY, TokenType.VISIBILITY, TokenType.ACCESS,
+                TokenType.INT, TokenType.BOOLEAN, TokenType.TRUE, TokenType.FALSE, TokenType.WHILE, TokenType.IF,
+                TokenType.RETURN, TokenType.ELSE, TokenType.VOID, TokenType.NEW, TokenType.NULL};
+        for (TokenType want : kw)
+            Check.equal("keyword", want, s.scan().getTokenType());
+        int ids = 0;
+        Token t;
+        while ((t = s.scan()).getTokenType() == TokenType.ID) ids++;
+        Check.equal("near misses are all IDs", 27, ids);
+        Check.equal("then EOT", TokenType.EOT, t.getTokenType());
+
+        byte[] src = "x count x1 count 42 x 42 count".getBytes(StandardCharsets.ISO_8859_1);
+        s = new Scanner(src, new ErrorReporter());
+        Token[] toks = new Token[9];
+        s.scan(toks, 0, toks.length);
+        Check.that("repeated name is one String", toks[0].getTokenText() == toks[5].getTokenText());
+        Check.that("repeated name is one String", toks[1].getTokenText() == toks[3].getTokenText()
+                && toks[3].getTokenText() == toks[7].getTokenText());
+        Check.that("repeated number is one String", toks[4].getTokenText() == toks[6].getTokenText());
+        Check.equal("distinct names", "x1", toks[2].getTokenText());
+
+        // operators carry their enum, and their spelling is the enum's
+        s = new Scanner("|| && == != < <= > >= + - * / !".getBytes(StandardCharsets.ISO_8859_1), new ErrorReporter());
+        for (OperatorType op : OperatorType.values()) {
+            if (op == OperatorType.SHL) continue;
+            t = s.scan();
+            Check.equal("operator " + op.spelling, op, t.getOperator());
+            Check.that("operator spelling " + op.spelling, t.getTokenText() == op.spelling);
+        }
+    }
+
+    // whitespace and comments are skipped in a loop, so no run of them is too long
+    static void trivia() throws Exception {
+        List<String> got = spellings(new Scanner(new FileInputStream(INPUTS + "trivia.java"), new ErrorReporter()));
+        Check.equal("trivia.java", "[ID a, ID b, ID c, ID d, OP /, ID e, ID f, EOT ]", got.toString());
+
+        ErrorReporter errors = new ErrorReporter();
+        got = spellings(new Scanner(new FileInputStream(INPUTS + "unterminated.java"), errors));
+        Check.equal("unterminated comment", "[ID g, ERROR null]", got.toString());
+        Check.equal("unterminated comment reported", "[1:18: No end of block comment]", Check.stdout(errors::outputErrors).trim());
+
+        // millions of trivia characters between two tokens, on a small stack where recursion would overflow
+        StringBuilder sb = new StringBuilder("a");
+        for (int i = 0; i < 500_000; i++) sb.append(i % 3 == 0 ? "\n" : i % 3 == 1 ? " /**/\t" : "// x\r\n");
+        byte[] src = sb.append("b").toString().getBytes(StandardCharsets.ISO_8859_1);
+        List<List<String>> result = new ArrayList<>();
+        Thread t = new Thread(null, () -> result.add(spellings(new Scanner(src, new ErrorReporter()))), "scan", 64 << 10);
+        t.start();
+        t.join();
+        Check.equal(src.length + " bytes of trivia", "[[ID a, ID b, EOT ]]", result.toString());
+    }
+
+    static List<String> spellings(Scanner s) {
+        List<String> out = new ArrayList<>();
+        Token t;
+        do {
+            t = s.scan();
+            out.add(spelling(t));
+        } while (t.getTokenType() != TokenType.EOT && t.getTokenType() != TokenType.ERROR);
+        return out;
+    }
+
+    static String spelling(Token t) {
+        return t.getTokenType() + " " + t.getTokenText();
+    }
+
+    // hands the bytes over a few at a time, like a pipe or a slow disk
+    static class Dribble extends FilterInputStream {
+        int reads = 0;
+
+        Dribble(byte[] b) {
+            super(new ByteArrayInputStream(b));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            reads++;
+            return super.read(b, off, Math.min(len, 3));
+        }
+    }
+}
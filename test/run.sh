@@ -0,0 +1,17 @@
+#!/bin/sh
+# Builds src and the tests into a scratch directory and runs every test class.
+#  Run from the repository root: sh test/run.sh
+out=$(mktemp -d) || exit 1
+trap 'rm -rf "$out"' EXIT
+javac -nowarn -d "$out" $(find src test/miniJava -name '*.java') || exit 1
+status=0
+for t in \
+    miniJava.SyntacticAnalyzer.ScannerTest \
+    miniJava.SyntacticAnalyzer.ParserTest \
+    miniJava.ContextualAnalysis.IdentificationTest \
+    miniJava.CodeGeneration.x64.EncodingTest \
+    miniJava.CodeGeneration.ArrayTest
+do
+    java -cp "$out" "$t" || status=1
+done
+exit $status